@@ -1,4 +1,9 @@
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  *
@@ -7,19 +12,113 @@ import java.io.PrintStream;
  * An implementation of aמ AVL Tree with
  * distinct integer keys and info.
  *
+ * A tree with up to SMALL_LIMIT items is kept as a sorted array of keys and an array of infos,
+ * it turns into linked nodes when it grows past that and back into arrays when it shrinks
+ * below SMALL_LIMIT / 2.
+ * The rebalancing, join and split of the linked form are in RankBalancedTree.
+ *
  */
 
-public class AVLTree {
+public class AVLTree extends RankBalancedTree<AVLTree.IAVLNodeOur> {
 
-    private IAVLNodeOur root;
     private static IAVLNodeOur virtualNode = new AVLNode();
-    private IAVLNodeOur max;
-    private IAVLNodeOur min;
+    // the small form: sorted keys and their infos, null when the tree is made of nodes
+    private int[] smallKeys;
+    private String[] smallInfo;
+    private int smallSize;
+    private static final int SMALL_LIMIT = 64;
+    private static final int SMALL_INITIAL_CAPACITY = 4;
+    // subtrees up to this size are filled by one task in the parallel array functions
+    private static final int PARALLEL_CUTOFF = 1 << 13;
+    // the number of descents searchAll keeps going at the same time
+    private static final int SEARCH_LANES = 8;
+    // smaller trees stay in the cache, searchAll loops over search for them since sorting the keys costs more than it saves
+    private static final int SEARCH_ALL_MIN_SIZE = 1 << 18;
+    // the value storage mode: infos of nodes are records in this arena, null when nodes hold Strings
+    private ValueArena arena;
+    // the aggregate kept in the nodes besides the size, null if there is none
+    private Aggregate<Object> aggregate;
+    // the hash index from keys to the nodes of the linked form, null if it is off. empty in the small form
+    private NodeIndex index;
+    // the Bloom filter of the keys that search asks first, null if it is off
+    private KeyFilter filter;
+    // the lazy delete mode: delete marks nodes dead, they are purged together when they are too many
+    private boolean lazyDelete;
+    // the dead nodes in the linked form
+    private int deadCount;
+    // the dead nodes are purged once they are more than 1 / PURGE_DIVISOR of the nodes
+    private static final int PURGE_DIVISOR = 4;
+    // true while an incremental compaction pass runs, compactCursor is the last key it copied
+    private boolean compacting;
+    private long compactCursor;
 
     public AVLTree() {
-        root = virtualNode;
-        max = null;
-        min = null;
+        this(Engine.AVL);
+    }
+
+    /**
+     * public AVLTree(Engine engine)
+     * <p>
+     * Creates an empty tree that is kept balanced by the rules of engine.
+     */
+    public AVLTree(Engine engine) {
+        super(engine, virtualNode);
+        smallKeys = new int[SMALL_INITIAL_CAPACITY];
+        smallInfo = new String[SMALL_INITIAL_CAPACITY];
+        smallSize = 0;
+    }
+
+    /**
+     * private static AVLTree linkedTree(Engine engine)
+     * <p>
+     * Returns an empty tree that is already in the linked form, for building from subtrees
+     * Complexity: O(1)
+     */
+    private static AVLTree linkedTree(Engine engine) {
+        AVLTree tree = new AVLTree(engine);
+        tree.smallKeys = null;
+        tree.smallInfo = null;
+        return tree;
+    }
+
+    /**
+     * private AVLTree emptyLike(boolean linked)
+     * <p>
+     * Returns an empty tree with the engine, value arena and aggregate of the tree,
+     * in the linked form if linked, for the trees that split functions return
+     * Complexity: O(1)
+     */
+    private AVLTree emptyLike(boolean linked) {
+        AVLTree tree = linked ? linkedTree(engine) : new AVLTree(engine);
+        tree.arena = arena;
+        tree.aggregate = aggregate;
+        tree.index = (index != null) ? new NodeIndex() : null;
+        tree.filter = (filter != null) ? KeyFilter.staleFilter() : null;
+        tree.lazyDelete = lazyDelete;
+        return tree;
+    }
+
+    protected boolean lessThan(IAVLNodeOur a, IAVLNodeOur b) {
+        return a.getKey() < b.getKey();
+    }
+
+    protected RankBalancedTree<IAVLNodeOur> newLinkedTree() {
+        return linkedTree(engine);
+    }
+
+    /**
+     * public enum Engine
+     * <p>
+     * The balancing rules a tree is kept under. all of them are rank based:
+     * the height field of a node holds its rank and a virtual node has rank -1.
+     * AVL - every node is (1,1), (1,2) or (2,1), so the rank is the height.
+     * WAVL - weak AVL, (2,2) nodes are allowed as well but leaves must be (1,1).
+     *        Inserts behave like AVL, a delete does at most two rotations.
+     * RED_BLACK - rank differences are 0 or 1 and the parent of a 0-child is not a 0-child
+     *        (a 0-child is a red node, the rank is the black height).
+     */
+    public enum Engine {
+        AVL, WAVL, RED_BLACK
     }
 
     /**
@@ -29,7 +128,10 @@ public class AVLTree {
      * complexity: O(1)
      */
     public boolean empty() {
-        return !root.isRealNode(); // to be replaced by student code
+        if (isSmall()) {
+            return smallSize == 0;
+        }
+        return super.empty();
     }
 
     /**
@@ -37,9 +139,41 @@ public class AVLTree {
      * <p>
      * Returns the info of an item with key k if it exists in the tree.
      * otherwise, returns null.
+     * With the Bloom filter on, a key the filter rules out is not looked for in the tree.
      * complexity: O(log n)
      */
     public String search(int k) {
+        if (filter == null) {
+            return searchTree(k);
+        }
+        if (filter.needsRebuild()) {
+            rebuildBloomFilter();
+        }
+        if (!filter.mightContain(k)) {
+            return null;
+        }
+        String info = searchTree(k);
+        if (info == null) {
+            filter.recordFalsePositive();
+        }
+        return info;
+    }
+
+    /**
+     * private String searchTree(int k)
+     * <p>
+     * search without the Bloom filter
+     * complexity: O(log n), O(1) expected with the hash index
+     */
+    private String searchTree(int k) {
+        if (isSmall()) {
+            int i = Arrays.binarySearch(smallKeys, 0, smallSize, k);
+            return (i >= 0) ? smallInfo[i] : null;
+        }
+        if (index != null) {
+            IAVLNodeOur x = index.get(k);
+            return (x != null) ? x.getValue() : null;
+        }
         return searchInner(root, k);
     }
 
@@ -49,20 +183,163 @@ public class AVLTree {
      * Returns the info of an item with key k if it exists in the subtree
      * that x is its root.
      * otherwise, returns null.
-     * this is a recursive function
      * complexity: O(log n)
      */
     private static String searchInner(IAVLNodeOur x, int k) {
-        if ((x == null) || (!x.isRealNode())) {
-            return null;
+        while ((x != null) && (x.isRealNode())) {
+            int key = x.getKey();
+            if (key == k) {
+                return x.isDead() ? null : x.getValue();
+            }
+            x = (k < key) ? x.getLeft() : x.getRight();
+        }
+        return null;
+    }
+
+    /**
+     * public int searchAll(int[] keys, String[] out)
+     * <p>
+     * Looks up all of keys at once, out[i] gets the info of keys[i] or null if it is not in the tree.
+     * The keys are sorted and walked down the tree together, so every node on the shared part of
+     * their paths is read once. A key that is left alone in its subtree joins a group of SEARCH_LANES
+     * descents that step in turns, letting the memory loads of the group overlap.
+     * Trees smaller than SEARCH_ALL_MIN_SIZE are searched key by key.
+     * Returns the number of keys that were found.
+     * precondition: out.length >= keys.length
+     * Complexity: O(m log m + m log n) for m keys
+     */
+    public int searchAll(int[] keys, String[] out) {
+        int m = keys.length;
+        if (isSmall() || m < 2 * SEARCH_LANES || size() < SEARCH_ALL_MIN_SIZE) {
+            int found = 0;
+            for (int i = 0; i < m; i++) {
+                out[i] = search(keys[i]);
+                found += (out[i] != null) ? 1 : 0;
+            }
+            return found;
+        }
+        Arrays.fill(out, 0, m, null);
+        if (empty()) {
+            return 0;
+        }
+        // the key in the high half, its index in the low half, so sorting keeps equal keys together
+        long[] probes = new long[m];
+        for (int i = 0; i < m; i++) {
+            probes[i] = ((long) keys[i] << 32) | i;
+        }
+        Arrays.sort(probes);
+        IAVLNodeOur[] lanes = new IAVLNodeOur[SEARCH_LANES];
+        int[] laneProbes = new int[SEARCH_LANES];
+        int laneCount = 0;
+        int found = 0;
+        // subtrees with the range [from, to) of probes that still go down them, no engine is higher than twice its rank + 2
+        int capacity = 2 * root.getHeight() + 4;
+        IAVLNodeOur[] nodes = new IAVLNodeOur[capacity];
+        int[] froms = new int[capacity];
+        int[] tos = new int[capacity];
+        int depth = 0;
+        nodes[depth] = root;
+        froms[depth] = 0;
+        tos[depth++] = m;
+        while (depth > 0) {
+            depth--;
+            IAVLNodeOur x = nodes[depth];
+            int from = froms[depth];
+            int to = tos[depth];
+            if (to - from == 1) {
+                lanes[laneCount] = x;
+                laneProbes[laneCount++] = from;
+                if (laneCount == SEARCH_LANES) {
+                    found += searchLanes(lanes, laneProbes, laneCount, probes, out);
+                    laneCount = 0;
+                }
+                continue;
+            }
+            if (!x.isRealNode()) {
+                continue;
+            }
+            int key = x.getKey();
+            int lo = firstProbeAtLeast(probes, from, to, key);
+            int hi = (key == Integer.MAX_VALUE) ? to : firstProbeAtLeast(probes, lo, to, key + 1);
+            if (hi < to) {
+                nodes[depth] = x.getRight();
+                froms[depth] = hi;
+                tos[depth++] = to;
+            }
+            if (from < lo) {
+                nodes[depth] = x.getLeft();
+                froms[depth] = from;
+                tos[depth++] = lo;
+            }
+            if ((lo < hi) && !x.isDead()) {
+                String info = x.getValue();
+                for (int j = lo; j < hi; j++) {
+                    out[(int) probes[j]] = info;
+                }
+                found += hi - lo;
+            }
         }
-        if (x.getKey() == k) {
-            return x.getValue();
+        return found + searchLanes(lanes, laneProbes, laneCount, probes, out);
+    }
+
+    /**
+     * private static int firstProbeAtLeast(long[] probes, int from, int to, int k)
+     * <p>
+     * Returns the first index in [from, to) of the sorted probes whose key is at least k, or to
+     * Complexity: O(log (to - from))
+     */
+    private static int firstProbeAtLeast(long[] probes, int from, int to, int k) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if ((int) (probes[mid] >> 32) < k) {
+                from = mid + 1;
+            }
+            else {
+                to = mid;
+            }
         }
-        if (k < x.getKey()) {
-            return searchInner(x.getLeft(), k);
+        return from;
+    }
+
+    /**
+     * private static int searchLanes(IAVLNodeOur[] lanes, int[] laneProbes, int count, long[] probes, String[] out)
+     * <p>
+     * Finishes count independent descents, lane i looks for the key of probes[laneProbes[i]] below lanes[i].
+     * Every round moves each unfinished lane one level down, so the loads of different lanes
+     * do not wait for each other.
+     * Returns the number of keys that were found.
+     * Complexity: O(count log n)
+     */
+    private static int searchLanes(IAVLNodeOur[] lanes, int[] laneProbes, int count, long[] probes, String[] out) {
+        int found = 0;
+        int active = count;
+        while (active > 0) {
+            active = 0;
+            for (int i = 0; i < count; i++) {
+                IAVLNodeOur x = lanes[i];
+                if (x == null) {
+                    continue;
+                }
+                if (!x.isRealNode()) {
+                    lanes[i] = null;
+                    continue;
+                }
+                long probe = probes[laneProbes[i]];
+                int k = (int) (probe >> 32);
+                int key = x.getKey();
+                if (key == k) {
+                    if (!x.isDead()) {
+                        out[(int) probe] = x.getValue();
+                        found++;
+                    }
+                    lanes[i] = null;
+                    continue;
+                }
+                lanes[i] = (k < key) ? x.getLeft() : x.getRight();
+                active++;
+            }
         }
-        return searchInner(x.getRight(), k);
+        return found;
     }
 
     /**
@@ -76,786 +353,1686 @@ public class AVLTree {
      * Complexity: O(log n)
      */
     public int insert(int k, String i) {
-        IAVLNodeOur node = new AVLNode(k, i);
-        node.setLeft(virtualNode);
-        node.setRight(virtualNode);
-        updateMinMax(node);
-        if (empty()) {
-            root = node;
-            return 0;
+        if (isSmall()) {
+            if (smallSize < SMALL_LIMIT) {
+                int result = smallInsert(k, i);
+                if ((result == 0) && (filter != null)) {
+                    filter.add(k);
+                }
+                return result;
+            }
+            if (searchTree(k) != null) {
+                return -1;
+            }
+            toLinked();
         }
-        IAVLNodeOur parent = treePosition(k);
-        node.setParent(parent);
-        if (node.getKey() == parent.getKey())
+        if ((index != null) && (index.get(k) != null)) {
             return -1;
-        updateSizeUpwards(parent, 1);
-        if (node.getKey() < parent.getKey())
-            parent.setLeft(node);
-        else
-            parent.setRight(node);
-        if (parent.getHeight() != 0)
-            // if parent is not a leaf then no rebalance is needed
-            return 0;
-        parent.setHeight(1);
-        return 1 + rebalanceAfterInsert(parent.getParent(), parent);
+        }
+        IAVLNodeOur parent = null;
+        if (!empty()) {
+            parent = treePosition(k);
+            if (k == parent.getKey())
+                return parent.isDead() ? revive(parent, i) : -1;
+        }
+        IAVLNodeOur node = newNode(k, i);
+        if (index != null) {
+            index.put(node);
+        }
+        if (filter != null) {
+            filter.add(k);
+        }
+        return insertNode(parent, node);
     }
 
     /**
-     * private void updateSizeUpwards(IAVLNodeOur node, int k)
+     * public int insertSorted(int[] keys, String[] info, int m)
      * <p>
-     * Add k to node's size up to the root
-     * Complexity: O(log n)
+     * Inserts the first m items of the arrays in one pass in key order. Every key is looked for
+     * from the node of the key before it: the walk goes up only until the subtree holds the key
+     * and then down, so close keys share the upper part of their paths instead of starting at the root.
+     * Keys that are already in the tree are skipped.
+     * Returns the number of items inserted.
+     * precondition: keys[0..m-1] is sorted in increasing order
+     * Complexity: O(m log (n / m + 1)) for the searches, the rebalancing is as in insert
      */
-    private void updateSizeUpwards(IAVLNodeOur node, int k) {
-        while (node != null) {
-            node.setSize(node.getSize() + k);
-            node = node.getParent();
+    public int insertSorted(int[] keys, String[] info, int m) {
+        int inserted = 0;
+        IAVLNodeOur finger = null;
+        for (int j = 0; j < m; j++) {
+            int k = keys[j];
+            if (isSmall() || empty()) {
+                inserted += (insert(k, info[j]) < 0) ? 0 : 1;
+                continue;
+            }
+            IAVLNodeOur parent = (finger == null) ? treePosition(k) : positionFrom(finger, k);
+            if (k == parent.getKey()) {
+                if (parent.isDead()) {
+                    revive(parent, info[j]);
+                    inserted++;
+                }
+                finger = parent;
+                continue;
+            }
+            IAVLNodeOur node = newNode(k, info[j]);
+            if (index != null) {
+                index.put(node);
+            }
+            if (filter != null) {
+                filter.add(k);
+            }
+            insertNode(parent, node);
+            inserted++;
+            finger = node;
         }
+        return inserted;
     }
 
     /**
-     * private void updateSizeUpByChildren(IAVLNodeOur node)
+     * private IAVLNodeOur positionFrom(IAVLNodeOur x, int k)
      * <p>
-     * update size of node according to its children up to the root
-     * Complexity: O(log n)
+     * treePosition that starts at the node x instead of the root: goes up to the first node
+     * whose subtree can hold k and then down from it.
+     * precondition: x is a node of the tree and x.getKey() <= k
+     * Complexity: O(log n), O(log d) amortized over a pass in key order, d is the number of keys between x and k
      */
-    private void updateSizeUpByChildren(IAVLNodeOur node) {
-        while (node != null) {
-            node.updateSizeByChildren();
-            node = node.getParent();
+    private IAVLNodeOur positionFrom(IAVLNodeOur x, int k) {
+        // the subtree of x holds the keys below the parent x is a left son of
+        while (x.getParent() != null) {
+            IAVLNodeOur parent = x.getParent();
+            if ((parent.getLeft() == x) && (k < parent.getKey())) {
+                break;
+            }
+            x = parent;
+        }
+        IAVLNodeOur y = x;
+        while (x.isRealNode()) {
+            y = x;
+            int key = x.getKey();
+            if (k == key) {
+                return x;
+            }
+            x = (k < key) ? x.getLeft() : x.getRight();
         }
+        return y;
     }
 
     /**
-     * private void updateMinMax(IAVLNodeOur node)
+     * private IAVLNodeOur newNode(int k, String i)
      * <p>
-     * Updates pointers to min and max after insert
+     * Returns a new node for the item, its info goes into the arena in the value storage mode
+     * Complexity: O(1), O(length of i) in the value storage mode
+     */
+    private IAVLNodeOur newNode(int k, String i) {
+        if (aggregate != null) {
+            return new AugmentedNode(k, i, aggregate);
+        }
+        if (arena == null) {
+            return new AVLNode(k, i);
+        }
+        return new ArenaNode(k, arena, arena.add(i));
+    }
+
+    /**
+     * precondition: !empty()
+     * return the IAVLNodeOur with key x if exists
+     * else returns the Node that should be its parent
      * Complexity: O(1)
      */
-    private void updateMinMax(IAVLNodeOur node) {
-        if ((this.max == null ) || (this.max.getKey() < node.getKey())) {
-            this.max = node;
+    private IAVLNodeOur treePosition(int k) {
+        IAVLNodeOur x = root;
+        IAVLNodeOur y = null;
+        while (x.isRealNode()) {
+            y = x;
+            if (k == x.getKey()) {
+                return x;
+            }
+            else if (k < x.getKey()) {
+                x = x.getLeft();
+            }
+            else {
+                x = x.getRight();
+            }
+        }
+        return y;
+    }
+
+    /**
+     * public int delete(int k)
+     *
+     * Deletes an item with key k from the binary tree, if it is there.
+     * The tree must remain valid, i.e. keep its invariants.
+     * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+     * A promotion/rotation counts as one re-balance operation, double-rotation is counted as 2.
+     * Returns -1 if an item with key k was not found in the tree.
+     * Complexity: O(log n)
+     */
+    public int delete(int k)
+    {
+        if (isSmall()) {
+            return smallDelete(k);
         }
-        if ((this.min == null) || (this.min.getKey() > node.getKey())) {
-            this.min = node;
+        if (empty()) {
+            return -1;
+        }
+        IAVLNodeOur x = (index != null) ? index.get(k) : treePosition(k);
+        if ((x == null) || (x.getKey() != k) || x.isDead()) {
+            return -1;
         }
+        return lazyDelete ? markDead(x) : deleteNode(x);
     }
 
     /**
-     * private int rebalanceAfterInsert(IAVLNodeOur node, IAVLNodeOur son)
-     * <p>
-     * Recursively rebalance the tree and returns the number of re-balancing operations done
-     * input are node and its son that their rank difference might be illegal
+     * private int deleteNode(IAVLNodeOur x)
+     *
+     * Removes the linked node x, releases its value and goes back to the small form if the tree got small.
+     * Returns the number of re-balancing operations.
      * Complexity: O(log n)
      */
-    private int rebalanceAfterInsert(IAVLNodeOur node, IAVLNodeOur son) {
-        if ((node == null) || (!node.isRealNode())) {
-            return 0;
+    private int deleteNode(IAVLNodeOur x) {
+        int counter = removeNode(x);
+        if (index != null) {
+            index.remove(x.getKey());
         }
-        int diffRight = getRightHeightDiff(node);
-        int diffLeft = getLeftHeightDiff(node);
-        if (isBalanced(diffRight, diffLeft)) {
-            return 0;
+        if (filter != null) {
+            filter.remove(x.getKey());
         }
-        // case 1:
-        if (diffRight + diffLeft == 1) {
-            promote(node);
-            return 1 + rebalanceAfterInsert(node.getParent(), node);
-        }
-        int sonDiffRight = getRightHeightDiff(son);
-        int sonDiffLeft = getLeftHeightDiff(son);
-        // case 2:
-        if ((diffLeft == 0) && (sonDiffLeft == 1)) {
-            rotateRight(son, node);
-            demote(node);
-            return 2;
-        }
-        else if ((diffRight == 0) && (sonDiffRight == 1)) {
-            rotateLeft(son, node);
-            demote(node);
-            return 2;
-        }
-        //case 3:
-        else {
-            if (diffRight == 0) {
-                doubleRotateRightLeft(son, node);
-            } else {
-                doubleRotateLeftRight(son, node);
-            }
-            demote(node);
-            demote(son);
-            promote(node.getParent());
-            return 5;
+        releaseValue(x);
+        if (deadCount > 0) {
+            skipDeadEnds();
+        }
+        if (!shrinkIfSmall()) {
+            compactValuesIfSparse();
         }
+        return counter;
     }
 
-    /** private int getLeftHeightDiff(IAVLNodeOur node)
-     * <p>
-     * return the height difference between node and its left son
+    /**
+     * public String min()
+     *
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty.
      * Complexity: O(1)
      */
-    private int getLeftHeightDiff(IAVLNodeOur node) {
-        return node.getHeight() - node.getLeft().getHeight();
+    public String min()
+    {
+        if (isSmall()) {
+            return (smallSize == 0) ? null : smallInfo[0];
+        }
+        if (this.min == null) {
+            return null;
+        }
+        else {
+            return this.min.getValue();
+        }
     }
 
-    /** private int getRightHeightDiff(IAVLNodeOur node)
-     * <p>
-     * return the height difference between node and its right son
+    /**
+     * public String max()
+     *
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty.
      * Complexity: O(1)
      */
-    private int getRightHeightDiff(IAVLNodeOur node) {
-        return node.getHeight() - node.getRight().getHeight();
+    public String max()
+    {
+        if (isSmall()) {
+            return (smallSize == 0) ? null : smallInfo[smallSize - 1];
+        }
+        if (this.max == null) {
+            return null;
+        }
+        else {
+            return this.max.getValue();
+        }
     }
 
-    /** private boolean isBalanced(int diffRight, int diffLeft)
-     * <p>
-     * check if the node has legal height difference with its sons
-     * Complexity O(1)
+    /**
+     * public int peekMinKey()
+     *
+     * Returns the smallest key in the tree.
+     * Throws NoSuchElementException if the tree is empty.
+     * Complexity: O(1)
      */
-    private boolean isBalanced(int diffRight, int diffLeft) {
-        return ((diffRight == 1) && (diffLeft == 1)) || ((diffRight == 1) && (diffLeft == 2)) || ((diffRight == 2) && (diffLeft == 1));
+    public int peekMinKey() {
+        if (isSmall()) {
+            if (smallSize == 0) {
+                throw new NoSuchElementException("empty tree");
+            }
+            return smallKeys[0];
+        }
+        if (this.min == null) {
+            throw new NoSuchElementException("empty tree");
+        }
+        return this.min.getKey();
     }
 
-    /** private void promote(IAVLNodeOur node)
-     * <p>
-     * promote node's rank(=height) by 1
+    /**
+     * public int peekMaxKey()
+     *
+     * Returns the largest key in the tree.
+     * Throws NoSuchElementException if the tree is empty.
      * Complexity: O(1)
      */
-    private void promote(IAVLNodeOur node) {
-        node.setHeight(node.getHeight() + 1);
+    public int peekMaxKey() {
+        if (isSmall()) {
+            if (smallSize == 0) {
+                throw new NoSuchElementException("empty tree");
+            }
+            return smallKeys[smallSize - 1];
+        }
+        if (this.max == null) {
+            throw new NoSuchElementException("empty tree");
+        }
+        return this.max.getKey();
     }
 
-    /** private void demote(IAVLNodeOur node)
-     * <p>
-     * demote node's rank(=height) by 1
-     * Complexity: O(1)
+    /**
+     * public String pollMin()
+     *
+     * Deletes the item with the smallest key and returns its info,
+     * or returns null if the tree is empty.
+     * The new min is the successor of the old one, found through the parent pointers.
+     * Complexity: O(1) amortized for the search and the pointer repair, the rebalancing is as in delete
      */
-    private void demote(IAVLNodeOur node) {
-        node.setHeight(node.getHeight() - 1);
+    public String pollMin() {
+        if (isSmall()) {
+            if (smallSize == 0) {
+                return null;
+            }
+            String info = smallInfo[0];
+            smallDelete(smallKeys[0]);
+            return info;
+        }
+        if (this.min == null) {
+            return null;
+        }
+        IAVLNodeOur x = this.min;
+        String info = x.getValue();
+        deleteNode(x);
+        return info;
     }
 
-    /** private void demote(IAVLNodeOur node)
-     * <p>
-     * demote node's rank(=height) by 2
-     * Complexity: O(1)
+    /**
+     * public String pollMax()
+     *
+     * Deletes the item with the largest key and returns its info,
+     * or returns null if the tree is empty.
+     * The new max is the predecessor of the old one, found through the parent pointers.
+     * Complexity: O(1) amortized for the search and the pointer repair, the rebalancing is as in delete
      */
-    private void doubleDemote(IAVLNodeOur node) {
-        node.setHeight(node.getHeight() - 2);
+    public String pollMax() {
+        if (isSmall()) {
+            if (smallSize == 0) {
+                return null;
+            }
+            String info = smallInfo[smallSize - 1];
+            smallDelete(smallKeys[smallSize - 1]);
+            return info;
+        }
+        if (this.max == null) {
+            return null;
+        }
+        IAVLNodeOur x = this.max;
+        String info = x.getValue();
+        deleteNode(x);
+        return info;
     }
 
     /**
-     * private void rotateRight(IAVLNodeOur son, IAVLNodeOur parent)
-     * <p>
-     * perform a right rotation on son and parent nodes
-     * Complexity: O(1)
+     * public int[] keysToArray()
+     *
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
      */
-    private void rotateRight(IAVLNodeOur son, IAVLNodeOur parent) {
-        parent.setLeft(son.getRight());
-        parent.getLeft().setParent(parent);
-        son.setRight(parent);
-        updateParentsAndSizeAfterRotation(son, parent);
+    public int[] keysToArray()
+    {
+        if (isSmall()) {
+            return Arrays.copyOf(smallKeys, smallSize);
+        }
+        int[] keys = new int[size()];
+        keysToArrayInner(root, keys, 0);
+        return keys;// to be replaced by student code
     }
 
     /**
-     * private void rotateLeft(IAVLNodeOur son, IAVLNodeOur parent)
-     * <p>
-     * perform a left rotation on son and parent nodes
-     * Complexity: O(1)
+     * private int keysToArrayInner(IAVLNodeOur node, int[] keys, int i)
+     *
+     * Fills the keys in a sorted array from index i
+     * Returns next index in array
+     * Complexity: O(n)
      */
-    private void rotateLeft(IAVLNodeOur son, IAVLNodeOur parent) {
-        parent.setRight(son.getLeft());
-        parent.getRight().setParent(parent);
-        son.setLeft(parent);
-        updateParentsAndSizeAfterRotation(son, parent);
+    private int keysToArrayInner(IAVLNodeOur node, int[] keys, int i) {
+        return entriesToArraysInner(node, keys, null, i);
     }
 
     /**
-     * private void updateParentsAndSizeAfterRotation(IAVLNodeOur son, IAVLNodeOur parent)
-     * <p>
-     * Updates the parent fields for nodes after a rotation
-     * Complexity: O(1)
+     * public String[] infoToArray()
+     *
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
      */
-    private void updateParentsAndSizeAfterRotation(IAVLNodeOur son, IAVLNodeOur parent) {
-        son.setParent(parent.getParent());
-        parent.setParent(son);
-        if (son.getParent() != null) {
-            if (son.getParent().getRight() == parent) {
-                son.getParent().setRight(son);
-            } else {
-                son.getParent().setLeft(son);
-            }
-        }
-        if (root == parent) {
-            root = son;
+    public String[] infoToArray()
+    {
+        if (isSmall()) {
+            return Arrays.copyOf(smallInfo, smallSize);
         }
-        parent.updateSizeByChildren();
-        son.updateSizeByChildren();
+        String[] info = new String[size()];
+        infoToArrayInner(root, info, 0);
+        return info;// to be replaced by student code
     }
 
     /**
-     * private void doubleRotateLeftRight(IAVLNodeOur son, IAVLNodeOur parent)
-     * <p>
-     * perform a double rotation (left then right) on son and parent nodes
-     * Complexity: O(1)
-     */
-    private void doubleRotateLeftRight(IAVLNodeOur son, IAVLNodeOur parent) {
-        rotateLeft(son.getRight(), son);
-        rotateRight(parent.getLeft(), parent);
+     * private int infosToArrayInner(IAVLNodeOur node, int[] keys, int i)
+     *
+     * Fills the infos in a sorted array from index i
+     * Returns next index in array
+     * Complexity: O(n)
+     */
+    private int infoToArrayInner(IAVLNodeOur node, String[] info, int i) {
+        return entriesToArraysInner(node, null, info, i);
+    }
+
+    /**
+     * public int entriesToArrays(int[] keys, String[] info)
+     *
+     * Fills keys and info from index 0 with the items of the tree sorted by key,
+     * in one walk instead of the two of keysToArray and infoToArray.
+     * keys or info may be null to fill only the other one.
+     * Returns the number of items.
+     * precondition: the arrays that are not null have room for size() items
+     * Complexity: O(n)
+     */
+    public int entriesToArrays(int[] keys, String[] info) {
+        if (isSmall()) {
+            if (keys != null) {
+                System.arraycopy(smallKeys, 0, keys, 0, smallSize);
+            }
+            if (info != null) {
+                System.arraycopy(smallInfo, 0, info, 0, smallSize);
+            }
+            return smallSize;
+        }
+        return entriesToArraysInner(root, keys, info, 0);
+    }
+
+    /**
+     * private static int entriesToArraysInner(IAVLNodeOur node, int[] keys, String[] info, int i)
+     *
+     * Fills the keys and infos of node's subtree from index i, an array that is null is skipped.
+     * Returns next index in the arrays
+     * Complexity: O(size of subtree)
+     */
+    private static int entriesToArraysInner(IAVLNodeOur node, int[] keys, String[] info, int i) {
+        // the nodes whose right subtree is not walked yet, no engine is higher than twice its rank + 2
+        IAVLNodeOur[] stack = new IAVLNodeOur[2 * node.getHeight() + 4];
+        int depth = 0;
+        IAVLNodeOur x = node;
+        while (true) {
+            while (x.isRealNode()) {
+                stack[depth++] = x;
+                x = x.getLeft();
+            }
+            if (depth == 0) {
+                return i;
+            }
+            x = stack[--depth];
+            if (!x.isDead()) {
+                if (keys != null) {
+                    keys[i] = x.getKey();
+                }
+                if (info != null) {
+                    info[i] = x.getValue();
+                }
+                i++;
+            }
+            x = x.getRight();
+        }
+    }
+
+    /**
+     * public FrozenAVLTree freeze()
+     *
+     * Returns an immutable snapshot of the items for fast lookups, later changes to the tree do not show in it.
+     * Complexity: O(n)
+     */
+    public FrozenAVLTree freeze() {
+        int n = size();
+        int[] keys = new int[n];
+        String[] info = new String[n];
+        entriesToArrays(keys, info);
+        return new FrozenAVLTree(keys, info, n);
+    }
+
+    /**
+     * public KeyBlocks keyBlocks()
+     *
+     * Returns a read only copy of the keys in blocks of KeyBlocks.BLOCK, for rank and range counts
+     * that compare a whole block at once.
+     * Complexity: O(n)
+     */
+    public KeyBlocks keyBlocks() {
+        return new KeyBlocks(keysToArray());
+    }
+
+    /**
+     * public int[] keysToArrayParallel()
+     *
+     * keysToArray on the common ForkJoinPool, see entriesToArraysParallel
+     * Complexity: O(n) work, O(n / threads + log n) time
+     */
+    public int[] keysToArrayParallel() {
+        int[] keys = new int[size()];
+        entriesToArraysParallel(keys, null);
+        return keys;
+    }
+
+    /**
+     * public String[] infoToArrayParallel()
+     *
+     * infoToArray on the common ForkJoinPool, see entriesToArraysParallel
+     * Complexity: O(n) work, O(n / threads + log n) time
+     */
+    public String[] infoToArrayParallel() {
+        String[] info = new String[size()];
+        entriesToArraysParallel(null, info);
+        return info;
+    }
+
+    /**
+     * public int entriesToArraysParallel(int[] keys, String[] info)
+     *
+     * entriesToArrays on the common ForkJoinPool. The items of a subtree start at the index
+     * given by the sizes of the subtrees left of it, so subtrees bigger than PARALLEL_CUTOFF
+     * are forked and every task writes its own range of the arrays.
+     * keys or info may be null to fill only the other one.
+     * Returns the number of items.
+     * precondition: the arrays that are not null have room for size() items
+     * Complexity: O(n) work, O(n / threads + log n) time
+     */
+    public int entriesToArraysParallel(int[] keys, String[] info) {
+        if (isSmall() || size() <= PARALLEL_CUTOFF) {
+            return entriesToArrays(keys, info);
+        }
+        purgeTombstones();
+        ensureSizes();
+        ForkJoinPool.commonPool().invoke(new FillTask(root, keys, info, 0));
+        return root.getSize();
+    }
+
+    /**
+     * private static class FillTask
+     *
+     * Fills the items of a subtree from a known index, forking both sons while the subtree is big.
+     */
+    private static class FillTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final IAVLNodeOur node;
+        private final int[] keys;
+        private final String[] info;
+        private final int from;
+
+        FillTask(IAVLNodeOur node, int[] keys, String[] info, int from) {
+            this.node = node;
+            this.keys = keys;
+            this.info = info;
+            this.from = from;
+        }
+
+        protected void compute() {
+            if (node.getSize() <= PARALLEL_CUTOFF) {
+                entriesToArraysInner(node, keys, info, from);
+                return;
+            }
+            int i = from + node.getLeft().getSize();
+            if (keys != null) {
+                keys[i] = node.getKey();
+            }
+            if (info != null) {
+                info[i] = node.getValue();
+            }
+            invokeAll(new FillTask(node.getLeft(), keys, info, from),
+                    new FillTask(node.getRight(), keys, info, i + 1));
+        }
+    }
+
+    /**
+     * public int size()
+     *
+     * Returns the number of items in the tree, dead nodes of the lazy delete mode are not counted.
+     * Complexity: O(1)
+     */
+    public int size() {
+        if (isSmall()) {
+            return smallSize;
+        }
+        return super.size() - deadCount;
+    }
+
+    /**
+     * public int getRoot()
+     *
+     * Returns the root AVL node, or null if the tree is empty
+     * A small tree is turned into nodes first.
+     * Complexity O(1), O(SMALL_LIMIT) for a small tree
+     */
+    public IAVLNode getRoot()
+    {
+        if (isSmall()) {
+            toLinked();
+        }
+        return root;
+    }
+
+    /**
+     * public AVLTree[] split(int x)
+     *
+     * splits the tree into 2 trees according to the key x.
+     * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+     *
+     * precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
+     * postcondition: none
+     * Complexity: O(log n)
+     * With the hash index on, the keys of the smaller part move to a new index, O(size of the smaller part);
+     * with the Bloom filter on, the filters of the results are stale and the next search of each rebuilds it in O(n).
+     * The lazy delete mode purges first, O(n) if there are dead nodes.
+     */
+    public AVLTree[] split(int x)
+    {
+        purgeTombstones();
+        if (isSmall()) {
+            return smallSplit(x, false);
+        }
+        AVLTree[] result = {emptyLike(true), emptyLike(true)};
+        IAVLNodeOur nodeX = treePosition(x);
+        splitNodes(nodeX, result);
+        splitIndex(result, nodeX);
+        for (AVLTree t : result) {
+            t.shrinkIfSmall();
+        }
+        return result;
+    }
+
+    /**
+     * public int join(IAVLNode x, AVLTree t)
+     *
+     * joins t and x with the tree.
+     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     *
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
+     * t has the same engine as the tree.
+     * postcondition: none
+     * Complexity: O(log n)
+     * With the hash index on, the keys of the smaller tree move to the index of the bigger one,
+     * O(size of the smaller tree); with the Bloom filter on, the filter of the joined tree is stale
+     * and the next search rebuilds it in O(n). The lazy delete mode purges both trees first,
+     * O(n) if there are dead nodes.
+     */
+    public int join(IAVLNode x, AVLTree t)
+    {
+        if (filter != null) {
+            // the keys of t and x are not in the filter, it is rebuilt on the next search
+            filter = KeyFilter.staleFilter();
+        }
+        purgeTombstones();
+        t.purgeTombstones();
+        if (isSmall() && t.isSmall() && (smallSize + t.smallSize < SMALL_LIMIT)) {
+            return smallJoin(x, t);
+        }
+        if (isSmall()) {
+            toLinked();
+        }
+        if (t.isSmall()) {
+            t.toLinked();
+        }
+        if (aggregate != null) {
+            // every node of the joined tree has to carry the aggregate
+            if (t.aggregate != aggregate) {
+                t.setAggregate(aggregate);
+            }
+            if (!(x instanceof AugmentedNode) || (((AugmentedNode) x).aggregate != aggregate)) {
+                x = newNode(x.getKey(), x.getValue());
+            }
+        }
+        if (index != null) {
+            joinIndex((IAVLNodeOur) x, t);
+        }
+        return joinNodes((IAVLNodeOur) x, t);
+    }
+
+    /**
+     * public AVLTree[] splitAt(int[] pivots)
+     *
+     * splits the tree into pivots.length + 1 trees, tree i holds the keys k with
+     * pivots[i - 1] <= k < pivots[i]. The pivots do not have to be in the tree, a pivot that is
+     * goes to the tree on its right. The tree should not be used afterwards, like after split.
+     * precondition: pivots is sorted in increasing order
+     * Complexity: O(P log n) for P pivots, plus the index, filter and purge costs of split
+     */
+    public AVLTree[] splitAt(int[] pivots) {
+        AVLTree[] result = new AVLTree[pivots.length + 1];
+        AVLTree rest = this;
+        for (int i = 0; i < pivots.length; i++) {
+            AVLTree[] parts = rest.splitBefore(pivots[i]);
+            result[i] = parts[0];
+            rest = parts[1];
+        }
+        result[pivots.length] = rest;
+        return result;
+    }
+
+    /**
+     * public AVLTree[] splitInto(int parts)
+     *
+     * splits the tree into parts trees whose sizes differ by at most one, in key order.
+     * The cut keys are found by rank with the subtree sizes, then it is splitAt.
+     * precondition: parts >= 1
+     * Complexity: O(P log n) for P parts, plus the index, filter and purge costs of split
+     */
+    public AVLTree[] splitInto(int parts) {
+        purgeTombstones();
+        int n = size();
+        int[] pivots = new int[parts - 1];
+        int count = 0;
+        if (!isSmall()) {
+            ensureSizes();
+        }
+        for (int i = 1; i < parts; i++) {
+            int rank = (int) ((long) n * i / parts);
+            if (rank < n) {
+                pivots[count++] = isSmall() ? smallKeys[rank] : select(rank).getKey();
+            }
+        }
+        AVLTree[] result = splitAt(Arrays.copyOf(pivots, count));
+        if (count == parts - 1) {
+            return result;
+        }
+        // fewer items than parts: the last parts are empty
+        AVLTree[] padded = Arrays.copyOf(result, parts);
+        for (int i = result.length; i < parts; i++) {
+            padded[i] = emptyLike(false);
+        }
+        return padded;
+    }
+
+    /**
+     * private IAVLNodeOur select(int rank)
+     *
+     * Returns the node with rank keys smaller than its key
+     * precondition: 0 <= rank < size(), the tree is made of nodes and its sizes are valid
+     * Complexity: O(log n)
+     */
+    private IAVLNodeOur select(int rank) {
+        IAVLNodeOur x = root;
+        while (true) {
+            int leftSize = x.getLeft().getSize();
+            if (rank == leftSize) {
+                return x;
+            }
+            if (rank < leftSize) {
+                x = x.getLeft();
+            }
+            else {
+                rank -= leftSize + 1;
+                x = x.getRight();
+            }
+        }
+    }
+
+    /**
+     * private AVLTree[] splitBefore(int k)
+     *
+     * splits the tree into [keys < k, keys >= k], k does not have to be in the tree.
+     * The node the search for k ends at is split around and then joined back on its side.
+     * Complexity: O(log n)
+     */
+    private AVLTree[] splitBefore(int k) {
+        purgeTombstones();
+        if (isSmall()) {
+            return smallSplit(k, true);
+        }
+        AVLTree[] result = {emptyLike(true), emptyLike(true)};
+        if (empty()) {
+            return result;
+        }
+        IAVLNodeOur y = treePosition(k);
+        splitNodes(y, result);
+        splitIndex(result, y);
+        AVLTree side = result[(y.getKey() < k) ? 0 : 1];
+        side.joinNodes(y, linkedTree(engine));
+        if (side.index != null) {
+            side.index.put(y);
+        }
+        for (AVLTree t : result) {
+            t.shrinkIfSmall();
+        }
+        return result;
+    }
+
+    /**
+     * public AVLTree extractRange(int lo, int hi)
+     *
+     * Removes the items with lo <= key <= hi and returns them as a tree of the same engine.
+     * The tree is split before lo and after hi and the outer parts are concatenated back.
+     * Complexity: O(log n), plus the index, filter and purge costs of split and join
+     * (O(size of the smaller parts) with the hash index, an O(n) filter rebuild on the next search
+     * with the Bloom filter)
+     */
+    public AVLTree extractRange(int lo, int hi) {
+        if ((lo > hi) || empty()) {
+            return emptyLike(false);
+        }
+        AVLTree[] low = splitBefore(lo);
+        AVLTree[] high;
+        if (hi == Integer.MAX_VALUE) {
+            high = new AVLTree[] {low[1], emptyLike(false)};
+        }
+        else {
+            high = low[1].splitBefore(hi + 1);
+        }
+        low[0].concat(high[1]);
+        boolean lazy = isLazySizes();
+        moveFrom(low[0]);
+        setLazySizes(lazy);
+        return high[0];
+    }
+
+    /**
+     * public int deleteRange(int lo, int hi)
+     *
+     * Deletes the items with lo <= key <= hi and returns how many there were.
+     * In the value storage mode the records of the removed items are counted as garbage all at once
+     * from the byte total of the removed subtree, so the arena is compacted like after single deletes.
+     * Complexity: O(log n) with the hash index and the Bloom filter off and no dead nodes, otherwise as extractRange,
+     * plus compactValues when the arena becomes sparse
+     */
+    public int deleteRange(int lo, int hi) {
+        AVLTree removed = extractRange(lo, hi);
+        if (arena != null && !removed.isSmall() && removed.root instanceof ArenaNode) {
+            // a small part already released its records when it took the array form
+            removed.ensureSizes();
+            arena.releaseBytes(((ArenaNode) removed.root).bytes);
+            compactValuesIfSparse();
+        }
+        return removed.size();
+    }
+
+    /**
+     * private void moveFrom(AVLTree other)
+     *
+     * Takes over the items of other, in either form. other should not be used afterwards
+     * Complexity: O(1)
+     */
+    private void moveFrom(AVLTree other) {
+        super.moveFrom(other);
+        smallKeys = other.smallKeys;
+        smallInfo = other.smallInfo;
+        smallSize = other.smallSize;
+        index = other.index;
+        filter = other.filter;
+        deadCount = other.deadCount;
+    }
+
+    /**
+     * public int concat(AVLTree t)
+     *
+     * Appends the items of t to the tree without a separating item, for putting back
+     * the trees of splitAt and splitInto. The smallest item of t is taken out and used as the join node.
+     * Returns the complexity of the join, 0 if t is empty.
+     * precondition: keys() < keys(t), t has the same engine as the tree
+     * Complexity: O(log n), plus the index, filter and purge costs of join
+     */
+    public int concat(AVLTree t) {
+        if (t.empty()) {
+            return 0;
+        }
+        int firstKey = t.peekMinKey();
+        String firstInfo = t.pollMin();
+        return join(newNode(firstKey, firstInfo), t);
+    }
+
+
+    // functions for the small (array) form
+
+    /**
+     * private boolean isSmall()
+     *
+     * Returns true if the tree is kept as sorted arrays
+     * Complexity: O(1)
+     */
+    private boolean isSmall() {
+        return smallKeys != null;
+    }
+
+    /**
+     * private int smallInsert(int k, String i)
+     *
+     * Inserts into the sorted arrays, growing them up to SMALL_LIMIT.
+     * Returns 0, or -1 if k is already in the tree.
+     * precondition: isSmall() and smallSize < SMALL_LIMIT
+     * Complexity: O(SMALL_LIMIT)
+     */
+    private int smallInsert(int k, String i) {
+        int pos = Arrays.binarySearch(smallKeys, 0, smallSize, k);
+        if (pos >= 0) {
+            return -1;
+        }
+        pos = -pos - 1;
+        if (smallSize == smallKeys.length) {
+            int capacity = Math.min(SMALL_LIMIT, 2 * smallKeys.length);
+            smallKeys = Arrays.copyOf(smallKeys, capacity);
+            smallInfo = Arrays.copyOf(smallInfo, capacity);
+        }
+        System.arraycopy(smallKeys, pos, smallKeys, pos + 1, smallSize - pos);
+        System.arraycopy(smallInfo, pos, smallInfo, pos + 1, smallSize - pos);
+        smallKeys[pos] = k;
+        smallInfo[pos] = i;
+        smallSize++;
+        return 0;
+    }
+
+    /**
+     * private int smallDelete(int k)
+     *
+     * Deletes from the sorted arrays. Returns 0, or -1 if k is not in the tree.
+     * precondition: isSmall()
+     * Complexity: O(SMALL_LIMIT)
+     */
+    private int smallDelete(int k) {
+        int pos = Arrays.binarySearch(smallKeys, 0, smallSize, k);
+        if (pos < 0) {
+            return -1;
+        }
+        System.arraycopy(smallKeys, pos + 1, smallKeys, pos, smallSize - pos - 1);
+        System.arraycopy(smallInfo, pos + 1, smallInfo, pos, smallSize - pos - 1);
+        smallSize--;
+        smallInfo[smallSize] = null;
+        if (filter != null) {
+            filter.remove(k);
+        }
+        return 0;
+    }
+
+    /**
+     * private AVLTree[] smallSplit(int x, boolean keepX)
+     *
+     * split for the small form, both trees stay small.
+     * x goes to the second tree if keepX, otherwise it is dropped
+     * Complexity: O(SMALL_LIMIT)
+     */
+    private AVLTree[] smallSplit(int x, boolean keepX) {
+        AVLTree[] result = {emptyLike(false), emptyLike(false)};
+        int pos = Arrays.binarySearch(smallKeys, 0, smallSize, x);
+        int leftSize = (pos >= 0) ? pos : -pos - 1;
+        int rightFrom = (pos >= 0 && !keepX) ? pos + 1 : leftSize;
+        result[0].setSmall(Arrays.copyOfRange(smallKeys, 0, leftSize),
+                Arrays.copyOfRange(smallInfo, 0, leftSize), leftSize);
+        result[1].setSmall(Arrays.copyOfRange(smallKeys, rightFrom, smallSize),
+                Arrays.copyOfRange(smallInfo, rightFrom, smallSize), smallSize - rightFrom);
+        return result;
+    }
+
+    /**
+     * private int smallJoin(IAVLNode x, AVLTree t)
+     *
+     * join for two small trees whose items fit in one small tree.
+     * Returns 1, the trees have no ranks.
+     * Complexity: O(SMALL_LIMIT)
+     */
+    private int smallJoin(IAVLNode x, AVLTree t) {
+        AVLTree low = this;
+        AVLTree high = t;
+        if (((smallSize > 0) && (x.getKey() < smallKeys[0]))
+                || ((t.smallSize > 0) && (x.getKey() > t.smallKeys[0]))) {
+            low = t;
+            high = this;
+        }
+        int n = low.smallSize + 1 + high.smallSize;
+        int[] keys = new int[Math.max(n, SMALL_INITIAL_CAPACITY)];
+        String[] info = new String[keys.length];
+        System.arraycopy(low.smallKeys, 0, keys, 0, low.smallSize);
+        System.arraycopy(low.smallInfo, 0, info, 0, low.smallSize);
+        keys[low.smallSize] = x.getKey();
+        info[low.smallSize] = x.getValue();
+        // the arrays keep the String, a record of x in the value arena is garbage now
+        releaseValue((IAVLNodeOur) x);
+        System.arraycopy(high.smallKeys, 0, keys, low.smallSize + 1, high.smallSize);
+        System.arraycopy(high.smallInfo, 0, info, low.smallSize + 1, high.smallSize);
+        setSmall(keys, info, n);
+        return 1;
+    }
+
+    /**
+     * private void setSmall(int[] keys, String[] info, int n)
+     *
+     * Makes the tree the small form holding the first n items of the arrays
+     * Complexity: O(1)
+     */
+    private void setSmall(int[] keys, String[] info, int n) {
+        if (keys.length == 0) {
+            keys = new int[SMALL_INITIAL_CAPACITY];
+            info = new String[SMALL_INITIAL_CAPACITY];
+        }
+        smallKeys = keys;
+        smallInfo = info;
+        smallSize = n;
+        clearNodes();
+        deadCount = 0;
+        reindex();
+    }
+
+    /**
+     * private void toLinked()
+     *
+     * Turns the small form into a balanced tree of nodes
+     * precondition: isSmall()
+     * Complexity: O(n)
+     */
+    private void toLinked() {
+        IAVLNodeOur built = buildBalanced(smallKeys, smallInfo, 0, smallSize);
+        smallKeys = null;
+        smallInfo = null;
+        smallSize = 0;
+        setBuiltRoot(built);
+        reindex();
+    }
+
+    /**
+     * private boolean shrinkIfSmall()
+     *
+     * Turns a tree of nodes with less than SMALL_LIMIT / 2 items into the small form.
+     * Returns true if it did
+     * Complexity: O(1), O(n) when it shrinks
+     */
+    private boolean shrinkIfSmall() {
+        int n = size();
+        if (n >= SMALL_LIMIT / 2) {
+            return false;
+        }
+        int[] keys = new int[Math.max(n, SMALL_INITIAL_CAPACITY)];
+        String[] info = new String[keys.length];
+        keysToArrayInner(root, keys, 0);
+        infoToArrayInner(root, info, 0);
+        if (arena != null) {
+            releaseValues(root);
+        }
+        setSmall(keys, info, n);
+        return true;
+    }
+
+    /**
+     * private IAVLNodeOur buildBalanced(int[] keys, String[] info, int from, int to)
+     *
+     * Builds a tree of nodes from the sorted items from..to-1 by taking the middle item as root.
+     * Returns the root, whose parent is not set.
+     * Complexity: O(to - from)
+     */
+    private IAVLNodeOur buildBalanced(int[] keys, String[] info, int from, int to) {
+        if (from >= to) {
+            return virtualNode;
+        }
+        int mid = (from + to) >>> 1;
+        IAVLNodeOur node = newNode(keys[mid], info[mid]);
+        IAVLNodeOur left = buildBalanced(keys, info, from, mid);
+        IAVLNodeOur right = buildBalanced(keys, info, mid + 1, to);
+        linkBuiltNode(node, left, right);
+        return node;
+    }
+
+
+    // functions for the value storage mode
+
+    /**
+     * public void setValueArena(boolean enabled, boolean dedup)
+     *
+     * In the value storage mode the infos of nodes are kept UTF-8 encoded in one byte arena
+     * (see ValueArena), with dedup equal infos are stored once. Infos are decoded when they are read.
+     * Nodes that already exist are rebuilt for the new mode.
+     * Complexity: O(n)
+     */
+    public void setValueArena(boolean enabled, boolean dedup) {
+        if (enabled && aggregate != null) {
+            throw new IllegalStateException("the value storage mode does not work with an aggregate");
+        }
+        arena = enabled ? new ValueArena(dedup) : null;
+        rebuildNodes();
+    }
+
+    /**
+     * private void rebuildNodes()
+     *
+     * Replaces the nodes by new ones of the current mode, in a balanced build
+     * Complexity: O(n)
+     */
+    private void rebuildNodes() {
+        if (!isSmall() && !empty()) {
+            int n = size();
+            setBuiltRoot(buildBalanced(keysToArray(), infoToArray(), 0, n));
+            deadCount = 0;
+            reindex();
+        }
+    }
+
+    /**
+     * public long valueMemoryBytes()
+     *
+     * Returns the bytes allocated by the value arena of the tree, 0 if it is not in the value storage mode
+     * Complexity: O(1)
+     */
+    public long valueMemoryBytes() {
+        return (arena == null) ? 0 : arena.memoryBytes();
+    }
+
+    /**
+     * public CharSequence searchView(int k)
+     *
+     * Like search, but in the value storage mode returns a view of the info in the arena
+     * that is decoded only when it is read.
+     * Complexity: O(log n)
+     */
+    public CharSequence searchView(int k) {
+        if (isSmall() || empty()) {
+            return search(k);
+        }
+        IAVLNodeOur x = treePosition(k);
+        if ((x.getKey() != k) || x.isDead()) {
+            return null;
+        }
+        if (x instanceof ArenaNode) {
+            ArenaNode node = (ArenaNode) x;
+            return node.arena.view(node.ref);
+        }
+        return x.getValue();
+    }
+
+    /**
+     * public void compactValues()
+     *
+     * Copies the infos of the nodes into a new arena that has no released records.
+     * Runs by itself when a delete leaves more garbage than live bytes in the arena.
+     * Complexity: O(n + bytes of the infos)
+     */
+    public void compactValues() {
+        if (arena == null || isSmall()) {
+            return;
+        }
+        ValueArena compacted = new ValueArena(arena.isDedup());
+        moveValues(root, compacted);
+        arena = compacted;
+    }
+
+    private void moveValues(IAVLNodeOur node, ValueArena to) {
+        for (IAVLNodeOur x = firstNode(node); x != null; x = nextNode(x, node)) {
+            if (x instanceof ArenaNode) {
+                ArenaNode arenaNode = (ArenaNode) x;
+                arenaNode.ref = to.addCopy(arenaNode.arena, arenaNode.ref);
+                arenaNode.arena = to;
+            }
+        }
+    }
+
+    /**
+     * private void compactValuesIfSparse()
+     *
+     * Compacts the arena when at least half of it is garbage, and the garbage bytes
+     * are at least the number of items so the walk over the nodes is paid for
+     * Complexity: O(1), amortized
+     */
+    private void compactValuesIfSparse() {
+        if (arena != null && arena.garbageBytes() > arena.usedBytes() / 2 && arena.garbageBytes() >= size()) {
+            compactValues();
+        }
+    }
+
+    private void releaseValue(IAVLNodeOur node) {
+        if (node instanceof ArenaNode) {
+            ArenaNode arenaNode = (ArenaNode) node;
+            arenaNode.arena.release(arenaNode.ref);
+        }
+    }
+
+    private void releaseValues(IAVLNodeOur node) {
+        for (IAVLNodeOur x = firstNode(node); x != null; x = nextNode(x, node)) {
+            releaseValue(x);
+        }
+    }
+
+    // functions for the lazy delete mode
+
+    /**
+     * public void setLazyDelete(boolean enabled)
+     *
+     * In the lazy delete mode delete only marks the node of the key dead, the tree is not restructured.
+     * search, size, min, max and the arrays skip dead nodes, and an insert of a dead key revives its node.
+     * When more than 1 / PURGE_DIVISOR of the nodes are dead they are all purged in one rebuild,
+     * so the tree never holds more dead nodes than that. Split, join and the other operations
+     * that cut the tree by ranks purge first. The small form deletes as before.
+     * Turning the mode off purges the dead nodes. Cannot be used with an aggregate.
+     * Complexity: O(1), O(n) when it purges
+     */
+    public void setLazyDelete(boolean enabled) {
+        if (enabled && aggregate != null) {
+            throw new IllegalStateException("the lazy delete mode does not work with an aggregate");
+        }
+        lazyDelete = enabled;
+        if (!enabled) {
+            purgeTombstones();
+        }
     }
 
     /**
-     * private void doubleRotateLeftRight(IAVLNodeOur son, IAVLNodeOur parent)
-     * <p>
-     * perform a double rotation (right then left) on son and parent nodes
+     * public int deadCount()
+     *
+     * Returns the number of dead nodes that wait to be purged
      * Complexity: O(1)
      */
-    private void doubleRotateRightLeft(IAVLNodeOur son, IAVLNodeOur parent) {
-        rotateRight(son.getLeft(), son);
-        rotateLeft(parent.getRight(), parent);
+    public int deadCount() {
+        return deadCount;
     }
 
     /**
-     * precondition: !empty()
-     * return the IAVLNodeOur with key x if exists
-     * else returns the Node that should be its parent
-     * Complexity: O(1)
+     * public void purgeTombstones()
+     *
+     * Drops the dead nodes, the live nodes are relinked into a balanced tree in key order.
+     * The nodes are kept, so the hash index stays valid.
+     * Complexity: O(n)
      */
-    private IAVLNodeOur treePosition(int k) {
-        IAVLNodeOur x = root;
-        IAVLNodeOur y = null;
-        while (x.isRealNode()) {
-            y = x;
-            if (k == x.getKey()) {
-                return x;
-            }
-            else if (k < x.getKey()) {
-                x = x.getLeft();
+    public void purgeTombstones() {
+        if (deadCount == 0) {
+            return;
+        }
+        IAVLNodeOur[] live = new IAVLNodeOur[size()];
+        int n = 0;
+        for (IAVLNodeOur x = firstNode(root); x != null; x = nextNode(x, root)) {
+            if (x.isDead()) {
+                releaseValue(x);
             }
             else {
-                x = x.getRight();
+                live[n++] = x;
             }
         }
-        return y;
+        deadCount = 0;
+        setBuiltRoot(relinkBalanced(live, 0, n));
+        if (!shrinkIfSmall()) {
+            compactValuesIfSparse();
+        }
     }
 
     /**
-     * public int delete(int k)
+     * private IAVLNodeOur relinkBalanced(IAVLNodeOur[] nodes, int from, int to)
      *
-     * Deletes an item with key k from the binary tree, if it is there.
-     * The tree must remain valid, i.e. keep its invariants.
-     * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
-     * A promotion/rotation counts as one re-balance operation, double-rotation is counted as 2.
-     * Returns -1 if an item with key k was not found in the tree.
-     * Complexity: O(log n)
+     * Like buildBalanced, but hangs the existing nodes from..to-1 under each other
+     * Complexity: O(to - from)
      */
-    public int delete(int k)
-    {
-        if (empty()) {
-            return -1;
-        }
-        IAVLNodeOur x = treePosition(k);
-        if (x.getKey() != k) {
-            return -1;
-        }
-        // is x is a leaf
-        if (x.getHeight() == 0) {
-            if (x.getParent() == null) {
-                root = virtualNode;
-                return 0;
-            }
-            else if (x.getParent().getRight() == x) {
-                x.getParent().setRight(virtualNode);
-            }
-            else {
-                x.getParent().setLeft(virtualNode);
-            }
-            updateSizeUpwards(x.getParent(), -1);
-        }
-        // is x has two sons
-        else if (x.getLeft().isRealNode() && (x.getRight().isRealNode())) {
-            // find x's successor
-            IAVLNodeOur suc = successor(x);
-            // remove successor from tree, it is unary
-            deleteUnaryNode(suc);
-            // replace x with its successor
-            suc.setRight(x.getRight());
-            suc.setLeft(x.getLeft());
-            suc.setParent(x.getParent());
-            suc.setHeight(x.getHeight());
-        }
-        // if x is unary
-        else {
-            deleteUnaryNode(x);
-        }
-        return rebalanceAfterDelete(x.getParent());
+    private IAVLNodeOur relinkBalanced(IAVLNodeOur[] nodes, int from, int to) {
+        if (from >= to) {
+            return virtualNode;
+        }
+        int mid = (from + to) >>> 1;
+        IAVLNodeOur left = relinkBalanced(nodes, from, mid);
+        IAVLNodeOur right = relinkBalanced(nodes, mid + 1, to);
+        linkBuiltNode(nodes[mid], left, right);
+        return nodes[mid];
     }
 
     /**
-     * private int rebalanceAfterDelete(IAVLNodeOur node)
+     * private int markDead(IAVLNodeOur x)
      *
-     * Recursively perform rebalancing operations until the tree is balanced
-     * Returns the number of re-balancing operations done.
-     * the input node x is the node that might have
-     * illegal height difference with its sons
-     * Complexity: O(log n)
+     * The delete of the lazy delete mode: takes x out of the index and the filter and marks it dead.
+     * Its value is released when it is purged, since revive can still reuse the node before that.
+     * Returns 0, there is no re-balancing
+     * Complexity: O(log n), O(n) when it purges
      */
-    private int rebalanceAfterDelete(IAVLNodeOur node) {
-        if ((node == null) || (!node.isRealNode())) {
-            return 0;
+    private int markDead(IAVLNodeOur x) {
+        x.setDead(true);
+        deadCount++;
+        if (index != null) {
+            index.remove(x.getKey());
         }
-        int diffRight = getRightHeightDiff(node);
-        int diffLeft = getLeftHeightDiff(node);
-        if (isBalanced(diffRight, diffLeft)) {
-            return 0;
+        if (filter != null) {
+            filter.remove(x.getKey());
         }
-        // case 1
-        if ((diffLeft == 2) && (diffRight == 2)) {
-            demote(node);
-            return 1 + rebalanceAfterDelete(node.getParent());
-        }
-        IAVLNodeOur son;
-        // cases 2,3,4 if the illegal height difference is on left side
-        if (diffLeft == 3) {
-            son = node.getRight();
-            int sonDiffRight = getRightHeightDiff(son);
-            int sonDiffLeft = getLeftHeightDiff(son);
-            // case 2
-            if ((sonDiffLeft == 1) && (sonDiffRight == 1)) {
-                rotateLeft(son, node);
-                demote(node);
-                promote(son);
-                return 3;
-            }
-            // case 3
-            else if (sonDiffLeft == 2) {
-                rotateLeft(son, node);
-                doubleDemote(node);
-                return 2 + rebalanceAfterDelete(node.getParent().getParent());
-            }
-            // case 4
-            else {
-                doubleRotateRightLeft(son, node);
-                doubleDemote(node);
-                promote(node.getParent());
-                demote(son);
-                return 5 + rebalanceAfterDelete(node.getParent().getParent());
-            }
+        if (PURGE_DIVISOR * deadCount > super.size()) {
+            purgeTombstones();
         }
-        // cases 2,3,4 if the illegal height difference is on right side
         else {
-            son = node.getLeft();
-            int sonDiffRight = getRightHeightDiff(son);
-            int sonDiffLeft = getLeftHeightDiff(son);
-            // case 2
-            if ((sonDiffLeft == 1) && (sonDiffRight == 1)) {
-                rotateRight(son, node);
-                demote(node);
-                promote(son);
-                return 3;
-            }
-            // case 3
-            else if (sonDiffRight == 2) {
-                rotateRight(son, node);
-                demote(node);
-                demote(node);
-                return 3 + rebalanceAfterDelete(node.getParent().getParent());
-            }
-            // case 4
-            else {
-                doubleRotateLeftRight(son, node);
-                doubleDemote(node);
-                promote(node.getParent());
-                demote(son);
-                return 5 + rebalanceAfterDelete(node.getParent().getParent());
-            }
+            skipDeadEnds();
         }
-
+        return 0;
     }
 
     /**
-     * private void deleteUnaryNode(IAVLNodeOur x)
-     * Deletes node x from tree
-     * precondition: x is unary node
-     * Complexity: O(1)
+     * private int revive(IAVLNodeOur x, String i)
+     *
+     * Makes the dead node x an item again with info i, instead of adding a node next to it
+     * Returns 0, there is no re-balancing
+     * Complexity: O(1), O(length of i + log n) in the value storage mode
      */
-    private void deleteUnaryNode(IAVLNodeOur x) {
-        if (x.getRight().isRealNode()) {
-            if (x.getParent() == null) {
-                root = x.getRight();
-                root.setParent(null);
-                return;
-            }
-            else {
-                x.getRight().setParent(x.getParent());
-                if (x.getParent().getRight() == x) {
-                    x.getParent().setRight(x.getRight());
-                }
-                else {
-                    x.getParent().setLeft(x.getRight());
+    private int revive(IAVLNodeOur x, String i) {
+        if (x instanceof ArenaNode) {
+            ArenaNode node = (ArenaNode) x;
+            int oldBytes = node.arena.recordBytes(node.ref);
+            node.arena.release(node.ref);
+            node.arena = arena;
+            node.ref = arena.add(i);
+            if (arena.recordBytes(node.ref) != oldBytes) {
+                // the byte totals from x up still count the old record
+                for (IAVLNodeOur y = x; y != null; y = y.getParent()) {
+                    y.updateSizeByChildren();
                 }
             }
         }
         else {
-            if (x.getParent() == null) {
-                root = x.getLeft();
-                root.setParent(null);
-                return;
-            }
-            else {
-                x.getLeft().setParent(x.getParent());
-                if (x.getParent().getRight() == x) {
-                    x.getParent().setRight(x.getLeft());
-                }
-                else {
-                    x.getParent().setLeft(x.getLeft());
-                }
-            }
+            ((AVLNode) x).value = i;
+        }
+        x.setDead(false);
+        deadCount--;
+        if (index != null) {
+            index.put(x);
+        }
+        if (filter != null) {
+            filter.add(x.getKey());
+        }
+        if ((min == null) || (x.getKey() < min.getKey())) {
+            min = x;
+        }
+        if ((max == null) || (x.getKey() > max.getKey())) {
+            max = x;
         }
-        updateSizeUpwards(x.getParent(), -1);
+        return 0;
     }
 
     /**
-     * private IAVLNodeOur successor(IAVLNodeOur node)
-     * Returns the successor of node is tree
-     * If node is the maximum in tree, returns null
-     * Complexity: O(log n)
+     * private void skipDeadEnds()
+     *
+     * Moves min and max past dead nodes to the nearest live ones
+     * Complexity: O(log n) for every dead node it passes
      */
-    private IAVLNodeOur successor(IAVLNodeOur node) {
-        if (node.getRight().isRealNode()) {
-            return getMinNode(node.getRight());
+    private void skipDeadEnds() {
+        while ((min != null) && min.isDead()) {
+            min = successor(min);
         }
-        IAVLNodeOur parent = node.getParent();
-        while ((parent != null) && (node == parent.getRight())) {
-            node = parent;
-            parent = node.getParent();
+        while ((max != null) && max.isDead()) {
+            max = predecessor(max);
         }
-        return parent;
     }
 
+    // functions for compaction
+
     /**
-     * private IAVLNodeOur getMinNode(IAVLNodeOur node)
-     * <p>
-     * Return the min node in mode's subtree
-     * Complexity O(log n)
+     * public void compact()
+     *
+     * Replaces every node by a new copy with the same item, rank and size, allocated in key order.
+     * After a lot of inserts and deletes the nodes of neighbouring keys lie all over the heap,
+     * the copies are allocated one after another so in-order walks (the arrays, ranges, iteration)
+     * read memory mostly in sequence. The garbage collector keeps the order of a fresh run of objects
+     * in practice, but may move them later. Nodes taken from getRoot before are not in the tree afterwards.
+     * Complexity: O(n)
      */
-    private IAVLNodeOur getMinNode(IAVLNodeOur node) {
-        while (node.getLeft().isRealNode()) {
-            node = node.getLeft();
-        }
-        return node;
+    public void compact() {
+        compact(false);
     }
 
     /**
-     * private IAVLNodeOur getMaxnNode(IAVLNodeOur node)
-     * <p>
-     * Return the max node in mode's subtree
-     * Complexity O(log n)
+     * public void compact(boolean rebalance)
+     *
+     * compact, and with rebalance the copies are also linked into a tree of minimal height,
+     * which purges the dead nodes of the lazy delete mode as well.
+     * Complexity: O(n)
      */
-    private IAVLNodeOur getMaxNode(IAVLNodeOur node) {
-        while (node.getRight().isRealNode()) {
-            node = node.getRight();
+    public void compact(boolean rebalance) {
+        if (isSmall() || empty()) {
+            return;
+        }
+        compacting = false;
+        if (!rebalance) {
+            compactStep(Integer.MAX_VALUE);
+            return;
+        }
+        IAVLNodeOur[] copies = new IAVLNodeOur[size()];
+        int n = 0;
+        for (IAVLNodeOur x = firstNode(root); x != null; x = nextNode(x, root)) {
+            if (x.isDead()) {
+                releaseValue(x);
+            }
+            else {
+                copies[n++] = copyNode(x);
+            }
         }
-        return node;
+        deadCount = 0;
+        setBuiltRoot(relinkBalanced(copies, 0, n));
+        reindex();
+        shrinkIfSmall();
     }
 
     /**
-     * public String min()
+     * public boolean compactStep(int budget)
      *
-     * Returns the info of the item with the smallest key in the tree,
-     * or null if the tree is empty.
-     * Complexity: O(1)
+     * Runs compact incrementally: copies up to budget more nodes in key order, so the work
+     * can be spread over quiet periods. The tree stays valid and usable between steps; the pass
+     * goes on after the last key it copied, so nodes inserted behind it wait for the next pass.
+     * Returns true when the pass is done, the next call starts a new one.
+     * Complexity: O(budget + log n)
      */
-    public String min()
-    {
-        if (this.min == null) {
-            return null;
+    public boolean compactStep(int budget) {
+        if (isSmall() || empty()) {
+            compacting = false;
+            return true;
+        }
+        if (!compacting) {
+            compactCursor = Long.MIN_VALUE;
+        }
+        IAVLNodeOur x = firstNodeAbove(compactCursor);
+        for (int copied = 0; (x != null) && (copied < budget); copied++) {
+            IAVLNodeOur y = copyNode(x);
+            relocateNode(x, y);
+            if ((index != null) && !y.isDead()) {
+                index.put(y);
+            }
+            compactCursor = y.getKey();
+            x = successor(y);
         }
-        else {
-            return this.min.getValue();
+        compacting = (x != null);
+        return !compacting;
+    }
+
+    /**
+     * private IAVLNodeOur firstNodeAbove(long k)
+     *
+     * Returns the node with the smallest key above k, dead or alive, or null if there is none
+     * Complexity: O(log n)
+     */
+    private IAVLNodeOur firstNodeAbove(long k) {
+        IAVLNodeOur found = null;
+        IAVLNodeOur x = root;
+        while (x.isRealNode()) {
+            if (x.getKey() > k) {
+                found = x;
+                x = x.getLeft();
+            }
+            else {
+                x = x.getRight();
+            }
         }
+        return found;
     }
 
     /**
-     * public String max()
+     * private IAVLNodeOur copyNode(IAVLNodeOur x)
      *
-     * Returns the info of the item with the largest key in the tree,
-     * or null if the tree is empty.
+     * Returns a new node of x's kind with x's item, aggregate, rank, size and dead mark, and no links
      * Complexity: O(1)
      */
-    public String max()
-    {
-        if (this.max == null) {
-            return null;
+    private IAVLNodeOur copyNode(IAVLNodeOur x) {
+        IAVLNodeOur y;
+        if (x instanceof AugmentedNode) {
+            AugmentedNode node = (AugmentedNode) x;
+            AugmentedNode copy = new AugmentedNode(x.getKey(), x.getValue(), node.aggregate);
+            copy.sum = node.sum;
+            y = copy;
+        }
+        else if (x instanceof ArenaNode) {
+            ArenaNode node = (ArenaNode) x;
+            ArenaNode copy = new ArenaNode(x.getKey(), node.arena, node.ref);
+            copy.bytes = node.bytes;
+            y = copy;
         }
         else {
-            return this.max.getValue();
+            y = new AVLNode(x.getKey(), x.getValue());
         }
+        y.setHeight(x.getHeight());
+        y.setSize(x.getSize());
+        y.setDead(x.isDead());
+        return y;
     }
 
+    // functions for the hash index
+
     /**
-     * public int[] keysToArray()
+     * public void setHashIndex(boolean enabled)
      *
-     * Returns a sorted array which contains all keys in the tree,
-     * or an empty array if the tree is empty.
+     * With the hash index the tree keeps a NodeIndex from keys to nodes next to the linked form,
+     * search finds the node by the key's hash instead of walking down. Insert, delete, split and
+     * join keep it up to date; min, max, ranges and the arrays still use the tree.
+     * The small form has no index, its arrays are searched as before.
+     * A joined tree has the index if the tree join was called on had it.
      * Complexity: O(n)
      */
-    public int[] keysToArray()
-    {
+    public void setHashIndex(boolean enabled) {
+        index = enabled ? new NodeIndex() : null;
+        reindex();
+    }
 
-        int[] keys = new int[size()];
-        keysToArrayInner(root, keys, 0);
-        return keys;// to be replaced by student code
+    /**
+     * public long indexMemoryBytes()
+     *
+     * Returns the bytes allocated by the hash index, 0 if it is off
+     * Complexity: O(1)
+     */
+    public long indexMemoryBytes() {
+        return (index == null) ? 0 : index.memoryBytes();
     }
 
     /**
-     * private int keysToArrayInner(IAVLNodeOur node, int[] keys, int i)
+     * private void reindex()
      *
-     * Fills the keys in a sorted array from index i
-     * Returns next index in array (this is a recursive function)
+     * Fills the hash index again with the nodes of the tree, after the nodes were replaced
      * Complexity: O(n)
      */
-    private int keysToArrayInner(IAVLNodeOur node, int[] keys, int i) {
-        if (node.isRealNode()) {
-            i = keysToArrayInner(node.getLeft(), keys, i);
-            keys[i] = node.getKey();
-            return keysToArrayInner(node.getRight(), keys, i+1);
+    private void reindex() {
+        if (index == null) {
+            return;
+        }
+        index.clear();
+        if (!isSmall()) {
+            indexNodes(index, root);
+        }
+    }
+
+    private static void indexNodes(NodeIndex index, IAVLNodeOur node) {
+        for (IAVLNodeOur x = firstNode(node); x != null; x = nextNode(x, node)) {
+            index.put(x);
         }
-        return i;
     }
 
     /**
-     * public String[] infoToArray()
+     * private void splitIndex(AVLTree[] result, IAVLNodeOur nodeX)
      *
-     * Returns an array which contains all info in the tree,
-     * sorted by their respective keys,
-     * or an empty array if the tree is empty.
+     * Gives the split trees their indexes: the bigger one takes over the index of the tree without
+     * the keys of the smaller one and nodeX, the smaller one gets a new index of its nodes.
+     * Complexity: O(size of the smaller tree), amortized
+     */
+    private void splitIndex(AVLTree[] result, IAVLNodeOur nodeX) {
+        if (index == null) {
+            return;
+        }
+        int bigger = (result[0].size() >= result[1].size()) ? 0 : 1;
+        AVLTree smaller = result[1 - bigger];
+        for (IAVLNodeOur x = firstNode(smaller.root); x != null; x = nextNode(x, smaller.root)) {
+            index.remove(x.getKey());
+            smaller.index.put(x);
+        }
+        index.remove(nodeX.getKey());
+        result[bigger].index = index;
+        index = null;
+    }
+
+    /**
+     * private void joinIndex(IAVLNodeOur x, AVLTree t)
+     *
+     * Makes the index of the tree the index of the joined tree: the bigger of the two indexes,
+     * with the nodes of the other tree and x added.
+     * precondition: index != null, both trees are in the linked form
+     * Complexity: O(size of the smaller tree), amortized
+     */
+    private void joinIndex(IAVLNodeOur x, AVLTree t) {
+        IAVLNodeOur other = t.root;
+        if ((t.index != null) && (t.index.size() > index.size())) {
+            NodeIndex taken = t.index;
+            t.index = index;
+            index = taken;
+            other = root;
+        }
+        indexNodes(index, other);
+        index.put(x);
+    }
+
+    // functions for the Bloom filter
+
+    /**
+     * public void setBloomFilter(boolean enabled)
+     *
+     * With the Bloom filter search first asks a KeyFilter of the keys, and returns null
+     * without walking the tree for a key it rules out. Inserts add to it; deletes are counted and
+     * the filter is rebuilt from keysToArray once they pile up. The trees made by split and join
+     * get a stale filter that the first search rebuilds.
      * Complexity: O(n)
      */
-    public String[] infoToArray()
-    {
-        String[] info = new String[size()];
-        infoToArrayInner(root, info, 0);
-        return info;// to be replaced by student code
+    public void setBloomFilter(boolean enabled) {
+        filter = enabled ? KeyFilter.staleFilter() : null;
+        if (enabled) {
+            rebuildBloomFilter();
+        }
     }
 
     /**
-     * private int infosToArrayInner(IAVLNodeOur node, int[] keys, int i)
+     * public void rebuildBloomFilter()
      *
-     * Fills the infos in a sorted array from index i
-     * Returns next index in array (this is a recursive function)
+     * Builds the Bloom filter again from the keys of the tree, sized for them, keeping its counters
      * Complexity: O(n)
      */
-    private int infoToArrayInner(IAVLNodeOur node, String[] info, int i) {
-        if (node.isRealNode()) {
-            i = infoToArrayInner(node.getLeft(), info, i);
-            info[i] = node.getValue();
-            return infoToArrayInner(node.getRight(), info, i+1);
+    public void rebuildBloomFilter() {
+        if (filter != null) {
+            filter = filter.rebuilt(keysToArray());
         }
-        return i;
     }
 
     /**
-     * public int size()
+     * public KeyFilter bloomFilter()
      *
-     * Returns the number of nodes in the tree.
+     * Returns the Bloom filter for its metrics (false positive rate, memory, rebuilds), or null if it is off
      * Complexity: O(1)
      */
-    public int size() {
-        return root.getSize();
+    public KeyFilter bloomFilter() {
+        return filter;
     }
 
+    // functions for aggregates
+
     /**
-     * public int getRoot()
+     * public interface Aggregate
      *
-     * Returns the root AVL node, or null if the tree is empty
-     * Complexity O(1);
+     * An associative summary of items (a monoid): sum, min, max, a sketch...
+     * combine(combine(a, b), c) must equal combine(a, combine(b, c)), and identity is the summary
+     * of no items. The tree keeps the summary of every subtree in its root node.
      */
-    public IAVLNode getRoot()
-    {
-        return root;
+    public interface Aggregate<A> {
+        public A of(int key, String info); // Returns the summary of one item.
+        public A combine(A left, A right); // Returns the summary of left's items followed by right's items.
+        public A identity(); // Returns the summary of no items.
     }
 
     /**
-     * public AVLTree[] split(int x)
-     *
-     * splits the tree into 2 trees according to the key x.
-     * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+     * public void setAggregate(Aggregate<?> aggregate)
      *
-     * precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
-     * postcondition: none
-     * Complexity: O(log n)
+     * Makes the nodes keep aggregate over their subtrees besides the size, through inserts,
+     * deletes, rotations, split and join. null stops keeping it.
+     * Nodes that already exist are rebuilt. Cannot be used in the value storage mode.
+     * Complexity: O(n)
      */
-    public AVLTree[] split(int x)
-    {
-        IAVLNodeOur nodeX = treePosition(x);
-        AVLTree[] result = {new AVLTree(), new AVLTree()};
-        result[0].root = nodeX.getLeft();
-        result[0].root.setParent(null);
-        result[1].root = nodeX.getRight();
-        result[1].root.setParent(null);
-        AVLTree tempTree = new AVLTree();
-        IAVLNodeOur son = nodeX;
-        nodeX = nodeX.getParent();
-        int changeIndex;
-        while (nodeX != null) {
-            if (nodeX.getRight() == son) {
-                tempTree.root = nodeX.getLeft();
-                changeIndex = 0;
-            }
-            else {
-                tempTree.root = nodeX.getRight();
-                changeIndex = 1;
-            }
-            son = nodeX;
-            nodeX = nodeX.getParent();
-            tempTree.getRoot().setParent(null);
-            result[changeIndex].join(son, tempTree);
+    @SuppressWarnings("unchecked")
+    public void setAggregate(Aggregate<?> aggregate) {
+        if (aggregate != null && arena != null) {
+            throw new IllegalStateException("an aggregate does not work in the value storage mode");
         }
-        return result;
+        if (aggregate != null && lazyDelete) {
+            throw new IllegalStateException("an aggregate does not work in the lazy delete mode");
+        }
+        this.aggregate = (Aggregate<Object>) aggregate;
+        rebuildNodes();
+    }
+
+    protected boolean isAugmented() {
+        // the nodes of the value storage mode keep the byte total of their records
+        return aggregate != null || arena != null;
     }
 
     /**
-     * public int join(IAVLNode x, AVLTree t)
-     *
-     * joins t and x with the tree.
-     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     * public <A> A aggregate(int lo, int hi)
      *
-     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
-     * postcondition: none
+     * Returns the aggregate of the items with lo <= key <= hi, in key order.
+     * Walks down to the highest node in the range, then down both of its range ends,
+     * taking whole subtrees that are inside the range.
+     * precondition: setAggregate was called with an aggregate of A
      * Complexity: O(log n)
      */
-    public int join(IAVLNode x, AVLTree t)
-    {
-        IAVLNodeOur xx = (IAVLNodeOur) x;
-        if (root.isRealNode()) {
-            if (t.root.isRealNode()) {
-                if (x.getKey() < root.getKey()) {
-                    return innerJoin(t, xx, this);
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(int lo, int hi) {
+        if (aggregate == null) {
+            throw new IllegalStateException("no aggregate is set");
+        }
+        Object result = aggregate.identity();
+        if (lo > hi) {
+            return (A) result;
+        }
+        if (isSmall()) {
+            for (int i = 0; i < smallSize; i++) {
+                if (lo <= smallKeys[i] && smallKeys[i] <= hi) {
+                    result = aggregate.combine(result, aggregate.of(smallKeys[i], smallInfo[i]));
                 }
-                else {
-                    return innerJoin(this, xx, t);
-                }
-            }
-            else {
-                return joinToTree(xx);
             }
+            return (A) result;
         }
-        else {
-            if (t.root.isRealNode()) {
-                root = t.root;
-                return joinToTree(xx);
+        ensureSizes();
+        IAVLNodeOur x = root;
+        while (x.isRealNode() && (x.getKey() < lo || x.getKey() > hi)) {
+            x = (x.getKey() < lo) ? x.getRight() : x.getLeft();
+        }
+        if (!x.isRealNode()) {
+            return (A) result;
+        }
+        // the items >= lo of x's left subtree, deeper parts have smaller keys so they go first
+        Object leftPart = aggregate.identity();
+        IAVLNodeOur y = x.getLeft();
+        while (y.isRealNode()) {
+            if (y.getKey() >= lo) {
+                Object part = aggregate.combine(aggregate.of(y.getKey(), y.getValue()), sumOf(y.getRight()));
+                leftPart = aggregate.combine(part, leftPart);
+                y = y.getLeft();
             }
             else {
-                root = xx;
-                xx.setLeft(virtualNode);
-                xx.setRight(virtualNode);
-                xx.setParent(null);
-                xx.setHeight(0);
-                xx.setSize(1);
-                min = xx;
-                max = xx;
-                return 1;
+                y = y.getRight();
             }
         }
-    }
-
-    /**
-     *  private int innerJoin(AVLTree t1, IAVLNodeOur x, AVLTree t2)
-     *
-     *  Join the trees to the node
-     *  Precondition: keys(t1) < x < keys(t2), trees not empty
-     *  Complexity: O(log n)
-     */
-    private int innerJoin(AVLTree t1, IAVLNodeOur x, AVLTree t2) {
-        min = t1.min;
-        max = t2.max;
-        // if x can be root
-        if (Math.abs(t1.root.getHeight() - t2.root.getHeight()) < 2) {
-            x.setParent(null);
-            x.setHeight(Math.max(t1.root.getHeight(), t2.root.getHeight()) + 1);
-            x.setLeft(t1.root);
-            t1.root.setParent(x);
-            x.setRight(t2.root);
-            t2.root.setParent(x);
-            root = x;
-            x.updateSizeByChildren();
-            return 1;
-        }
-        IAVLNodeOur a, b, c;
-        int counter = 0;
-        if (t1.root.getHeight() < t2.root.getHeight()) {
-            a = t1.root;
-            c = t2.root;
-            b = c.getLeft();
-            while (b.getHeight() > a.getHeight()) {
-                c = b;
-                b = b.getLeft();
-                counter++;
+        // the items <= hi of x's right subtree, deeper parts have bigger keys so they go last
+        Object rightPart = aggregate.identity();
+        y = x.getRight();
+        while (y.isRealNode()) {
+            if (y.getKey() <= hi) {
+                Object part = aggregate.combine(sumOf(y.getLeft()), aggregate.of(y.getKey(), y.getValue()));
+                rightPart = aggregate.combine(rightPart, part);
+                y = y.getRight();
             }
-            c.setLeft(x);
-            x.setLeft(a);
-            a.setParent(x);
-            x.setRight(b);
-            b.setParent(x);
-            x.setParent(c);
-            x.setHeight(Math.max(b.getHeight(), a.getHeight()) + 1);
-            updateSizeUpByChildren(x);
-            root = t2.root;
-            return counter + rebalanceAfterInsert(c,  x);
-        }
-        else {
-            a = t2.root;
-            c = t1.root;
-            b = c.getRight();
-            while (b.getHeight() > a.getHeight()) {
-                c = b;
-                b = b.getRight();
-                counter++;
+            else {
+                y = y.getLeft();
             }
-            c.setRight(x);
-            x.setRight(a);
-            a.setParent(x);
-            x.setLeft(b);
-            b.setParent(x);
-            x.setParent(c);
-            x.setHeight(Math.max(b.getHeight(), a.getHeight()) + 1);
-            updateSizeUpByChildren(x);
-            root = t1.root;
-            return counter + rebalanceAfterInsert(c, x);
         }
+        result = aggregate.combine(aggregate.combine(leftPart, aggregate.of(x.getKey(), x.getValue())), rightPart);
+        return (A) result;
     }
 
-    /**
-     * private int joinToTree(IAVLNodeOur x)
-     * Adds node x to tree
-     * Complexity: O(log n)
-     */
-    private int joinToTree(IAVLNodeOur x) {
-        x.setLeft(virtualNode);
-        x.setRight(virtualNode);
-        x.setHeight(0);
-        IAVLNodeOur parent;
-        if (x.getKey() < root.getKey()) {
-            parent = getMinNode(root);
-            parent.setLeft(x);
-            min = x;
-        }
-        else {
-            parent = getMaxNode(root);
-            parent.setRight(x);
-            max = x;
-        }
-        x.setParent(parent);
-        parent.setHeight(1);
-        x.setSize(1);
-        updateSizeUpwards(parent, 1);
-        return 1 + rebalanceAfterInsert(parent.getParent(), x);
+    private Object sumOf(IAVLNodeOur node) {
+        return (node instanceof AugmentedNode) ? ((AugmentedNode) node).sum : aggregate.identity();
     }
 
-
     // functions for printing
     public void print(PrintStream os) {
-        print(os, root);
+        purgeTombstones();
+        print(os, isSmall() ? buildBalanced(smallKeys, smallInfo, 0, smallSize) : root);
     }
 
     private void print(PrintStream os, IAVLNodeOur node) {
@@ -883,16 +2060,24 @@ public class AVLTree {
     }
 
 
+    // pre-order walk with an explicit stack, the right son is pushed first so the left one is printed first
     private void traverseNodes(StringBuilder sb, String padding, String pointer, IAVLNodeOur node,
                               boolean hasRightSibling) {
-        if (node != null) {
+        ArrayDeque<PrintFrame> stack = new ArrayDeque<>();
+        stack.push(new PrintFrame(padding, pointer, node, hasRightSibling));
+        while (!stack.isEmpty()) {
+            PrintFrame frame = stack.pop();
+            node = frame.node;
+            if (node == null) {
+                continue;
+            }
             sb.append("\n");
-            sb.append(padding);
-            sb.append(pointer);
+            sb.append(frame.padding);
+            sb.append(frame.pointer);
             sb.append(node.getKey() + " rank is " + node.getHeight() + " the size is " + node.getSize());
 
-            StringBuilder paddingBuilder = new StringBuilder(padding);
-            if (hasRightSibling) {
+            StringBuilder paddingBuilder = new StringBuilder(frame.padding);
+            if (frame.hasRightSibling) {
                 paddingBuilder.append("│  ");
             } else {
                 paddingBuilder.append("   ");
@@ -902,8 +2087,22 @@ public class AVLTree {
             String pointerRight = "└──";
             String pointerLeft = (node.getRight() != null) ? "├──" : "└──";
 
-            traverseNodes(sb, paddingForBoth, pointerLeft, node.getLeft(), node.getRight() != null);
-            traverseNodes(sb, paddingForBoth, pointerRight, node.getRight(), false);
+            stack.push(new PrintFrame(paddingForBoth, pointerRight, node.getRight(), false));
+            stack.push(new PrintFrame(paddingForBoth, pointerLeft, node.getLeft(), node.getRight() != null));
+        }
+    }
+
+    private static class PrintFrame {
+        private final String padding;
+        private final String pointer;
+        private final IAVLNodeOur node;
+        private final boolean hasRightSibling;
+
+        PrintFrame(String padding, String pointer, IAVLNodeOur node, boolean hasRightSibling) {
+            this.padding = padding;
+            this.pointer = pointer;
+            this.node = node;
+            this.hasRightSibling = hasRightSibling;
         }
     }
 
@@ -928,16 +2127,12 @@ public class AVLTree {
     /**
      * public interface IAVLNodeOur
      */
-    public interface IAVLNodeOur extends IAVLNode{
-        public void setLeft(IAVLNodeOur node); // Sets left child.
+    public interface IAVLNodeOur extends IAVLNode, RankBalancedTree.RankNode<IAVLNodeOur> {
         public IAVLNodeOur getLeft(); // Returns left child, if there is no left child returns null.
-        public void setRight(IAVLNodeOur node); // Sets right child.
         public IAVLNodeOur getRight(); // Returns right child, if there is no right child return null.
-        public void setParent(IAVLNodeOur node); // Sets parent.
         public IAVLNodeOur getParent(); // Returns the parent, if there is no parent return null.
-        public void setSize(int k);
-        public int getSize();
-        public void updateSizeByChildren();
+        public boolean isDead(); // Returns true if the node was deleted in the lazy delete mode and not purged yet.
+        public void setDead(boolean dead); // Marks the node dead or alive.
     }
 
     /**
@@ -958,6 +2153,7 @@ public class AVLTree {
         private IAVLNodeOur parent;
         private int height;
         private int size;
+        private boolean dead;
 
         public AVLNode() {
             height = virtualNodeHeight;
@@ -1041,7 +2237,73 @@ public class AVLTree {
         public void updateSizeByChildren() {
             size = 1 + getRight().getSize() + getLeft().getSize();
         }
+        public boolean isDead() {
+            return dead;
+        }
+        public void setDead(boolean dead) {
+            this.dead = dead;
+        }
     }
 
-}
+    /**
+     * private static class ArenaNode
+     *
+     * A node of the value storage mode, its info is the record ref of arena.
+     * The arena is kept per node since join can bring in nodes of another tree's arena.
+     * bytes is the total size of the records of the subtree, recomputed with the size from the sons.
+     */
+    private static class ArenaNode extends AVLNode {
+
+        private ValueArena arena;
+        private int ref;
+        private int bytes;
+
+        ArenaNode(int k, ValueArena arena, int ref) {
+            super(k, null);
+            this.arena = arena;
+            this.ref = ref;
+            this.bytes = arena.recordBytes(ref);
+        }
+
+        public String getValue() {
+            return arena.get(ref);
+        }
+
+        public void updateSizeByChildren() {
+            super.updateSizeByChildren();
+            bytes = arena.recordBytes(ref) + bytesOf(getLeft()) + bytesOf(getRight());
+        }
+
+        private static int bytesOf(IAVLNodeOur node) {
+            return (node instanceof ArenaNode) ? ((ArenaNode) node).bytes : 0;
+        }
+    }
+
+    /**
+     * private static class AugmentedNode
+     *
+     * A node that keeps the aggregate of its subtree, recomputed with the size from the sons.
+     */
+    private static class AugmentedNode extends AVLNode {
+
+        private final Aggregate<Object> aggregate;
+        private Object sum;
+
+        AugmentedNode(int k, String info, Aggregate<Object> aggregate) {
+            super(k, info);
+            this.aggregate = aggregate;
+            this.sum = aggregate.of(k, info);
+        }
+
+        public void updateSizeByChildren() {
+            super.updateSizeByChildren();
+            Object own = aggregate.of(getKey(), getValue());
+            sum = aggregate.combine(aggregate.combine(sumOf(getLeft()), own), sumOf(getRight()));
+        }
 
+        private Object sumOf(IAVLNodeOur node) {
+            return (node instanceof AugmentedNode) ? ((AugmentedNode) node).sum : aggregate.identity();
+        }
+    }
+
+}
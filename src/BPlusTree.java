@@ -0,0 +1,858 @@
+/**
+ *
+ * BPlusTree
+ *
+ * A B+ tree with distinct integer keys and info, with the same public operations as AVLTree.
+ * Every node holds a sorted int[] of keys sized to a few cache lines, so a search does
+ * about log_16(n) dependent memory accesses instead of log_2(n).
+ * Values live only in the leaves, and the leaves are linked for scans.
+ *
+ */
+
+public class BPlusTree {
+
+    // 32 int keys = 128 bytes, two cache lines
+    private static final int MAX_KEYS = 32;
+    private static final int MIN_KEYS = MAX_KEYS / 2;
+    // a tree of 2^31 keys with nodes at least half full is much lower than this
+    private static final int MAX_HEIGHT = 32;
+
+    private Node root;
+    // height of root, leaves are at height 0, -1 for an empty tree
+    private int height;
+    private Leaf first;
+    private Leaf last;
+
+    public BPlusTree() {
+        root = null;
+        height = -1;
+        first = null;
+        last = null;
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * Returns true if and only if the tree is empty.
+     * complexity: O(1)
+     */
+    public boolean empty() {
+        return root == null;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of an item with key k if it exists in the tree.
+     * otherwise, returns null.
+     * complexity: O(log n)
+     */
+    public String search(int k) {
+        if (root == null) {
+            return null;
+        }
+        Node node = root;
+        for (int level = height; level > 0; level--) {
+            Inner inner = (Inner) node;
+            node = inner.children[upperBound(inner.keys, inner.count, k)];
+        }
+        Leaf leaf = (Leaf) node;
+        int i = lowerBound(leaf.keys, leaf.count, k);
+        if ((i < leaf.count) && (leaf.keys[i] == k)) {
+            return leaf.values[i];
+        }
+        return null;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * Inserts an item with key k and info i to the tree.
+     * Returns the number of re-balancing operations (node splits), or 0 if none were necessary.
+     * Returns -1 if an item with key k already exists in the tree.
+     * Complexity: O(log n)
+     */
+    public int insert(int k, String i) {
+        if (root == null) {
+            Leaf leaf = new Leaf();
+            leaf.keys[0] = k;
+            leaf.values[0] = i;
+            leaf.count = 1;
+            leaf.size = 1;
+            root = leaf;
+            height = 0;
+            first = leaf;
+            last = leaf;
+            return 0;
+        }
+        Inner[] path = new Inner[MAX_HEIGHT];
+        int[] pathIndex = new int[MAX_HEIGHT];
+        Leaf leaf = descend(k, path, pathIndex);
+        int pos = lowerBound(leaf.keys, leaf.count, k);
+        if ((pos < leaf.count) && (leaf.keys[pos] == k)) {
+            return -1;
+        }
+        insertIntoLeaf(leaf, pos, k, i);
+        for (int level = 1; level <= height; level++) {
+            path[level].size++;
+        }
+        return splitUpwards(leaf, 0, path, pathIndex);
+    }
+
+    /**
+     * private Leaf descend(int k, Inner[] path, int[] pathIndex)
+     * <p>
+     * Walks from the root to the leaf that k belongs to.
+     * path[level] is the inner node at that height and pathIndex[level] is the son taken from it.
+     * precondition: !empty()
+     * Complexity: O(log n)
+     */
+    private Leaf descend(int k, Inner[] path, int[] pathIndex) {
+        Node node = root;
+        for (int level = height; level > 0; level--) {
+            Inner inner = (Inner) node;
+            int i = upperBound(inner.keys, inner.count, k);
+            path[level] = inner;
+            pathIndex[level] = i;
+            node = inner.children[i];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * private int splitUpwards(Node node, int level, Inner[] path, int[] pathIndex)
+     * <p>
+     * Splits node, which is at height level, while it holds more than MAX_KEYS keys,
+     * moving up the path. Returns the number of splits.
+     * Complexity: O(log n)
+     */
+    private int splitUpwards(Node node, int level, Inner[] path, int[] pathIndex) {
+        int splits = 0;
+        while (node.count > MAX_KEYS) {
+            int separator;
+            Node right;
+            if (node instanceof Leaf) {
+                right = splitLeaf((Leaf) node);
+                separator = right.keys[0];
+            } else {
+                separator = node.keys[MIN_KEYS];
+                right = splitInner((Inner) node);
+            }
+            splits++;
+            if (level == height) {
+                Inner newRoot = new Inner();
+                newRoot.keys[0] = separator;
+                newRoot.children[0] = node;
+                newRoot.children[1] = right;
+                newRoot.count = 1;
+                newRoot.size = node.size + right.size;
+                root = newRoot;
+                height++;
+                return splits;
+            }
+            level++;
+            Inner parent = path[level];
+            insertIntoInner(parent, pathIndex[level], separator, right);
+            node = parent;
+        }
+        return splits;
+    }
+
+    /**
+     * private Leaf splitLeaf(Leaf leaf)
+     * <p>
+     * Moves the upper half of leaf's items into a new leaf that follows it in the leaf list.
+     * Complexity: O(MAX_KEYS)
+     */
+    private Leaf splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf();
+        int keep = leaf.count / 2;
+        int move = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, move);
+        System.arraycopy(leaf.values, keep, right.values, 0, move);
+        java.util.Arrays.fill(leaf.values, keep, leaf.count, null);
+        right.count = move;
+        right.size = move;
+        leaf.count = keep;
+        leaf.size = keep;
+        right.prev = leaf;
+        right.next = leaf.next;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        }
+        leaf.next = right;
+        if (last == leaf) {
+            last = right;
+        }
+        return right;
+    }
+
+    /**
+     * private Inner splitInner(Inner node)
+     * <p>
+     * Moves the keys above keys[MIN_KEYS] and their sons into a new node.
+     * keys[MIN_KEYS] itself is left for the caller to move up.
+     * Complexity: O(MAX_KEYS)
+     */
+    private Inner splitInner(Inner node) {
+        Inner right = new Inner();
+        int move = node.count - MIN_KEYS - 1;
+        System.arraycopy(node.keys, MIN_KEYS + 1, right.keys, 0, move);
+        System.arraycopy(node.children, MIN_KEYS + 1, right.children, 0, move + 1);
+        java.util.Arrays.fill(node.children, MIN_KEYS + 1, node.count + 1, null);
+        right.count = move;
+        node.count = MIN_KEYS;
+        node.updateSize();
+        right.updateSize();
+        return right;
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * Deletes an item with key k from the tree, if it is there.
+     * Returns the number of re-balancing operations (borrows and merges), or 0 if none were necessary.
+     * Returns -1 if an item with key k was not found in the tree.
+     * Complexity: O(log n)
+     */
+    public int delete(int k) {
+        if (root == null) {
+            return -1;
+        }
+        Inner[] path = new Inner[MAX_HEIGHT];
+        int[] pathIndex = new int[MAX_HEIGHT];
+        Leaf leaf = descend(k, path, pathIndex);
+        int pos = lowerBound(leaf.keys, leaf.count, k);
+        if ((pos == leaf.count) || (leaf.keys[pos] != k)) {
+            return -1;
+        }
+        removeFromLeaf(leaf, pos);
+        for (int level = 1; level <= height; level++) {
+            path[level].size--;
+        }
+        int counter = 0;
+        Node node = leaf;
+        int level = 0;
+        while ((level < height) && (node.count < MIN_KEYS)) {
+            level++;
+            Inner parent = path[level];
+            int i = pathIndex[level];
+            // fix the pair of node and one of its siblings
+            int separatorIndex = (i > 0) ? i - 1 : i;
+            counter++;
+            if (!rebalancePair(parent, separatorIndex)) {
+                break;
+            }
+            node = parent;
+        }
+        shrinkRoot();
+        return counter;
+    }
+
+    /**
+     * private void shrinkRoot()
+     * <p>
+     * Removes roots that were left with a single son, or an empty root leaf.
+     * Complexity: O(log n)
+     */
+    private void shrinkRoot() {
+        while ((height > 0) && (root.count == 0)) {
+            root = ((Inner) root).children[0];
+            height--;
+        }
+        if ((height == 0) && (root.count == 0)) {
+            root = null;
+            height = -1;
+            first = null;
+            last = null;
+        }
+    }
+
+    /**
+     * public String min()
+     * <p>
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public String min() {
+        return (first == null) ? null : first.values[0];
+    }
+
+    /**
+     * public String max()
+     * <p>
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public String max() {
+        return (last == null) ? null : last.values[last.count - 1];
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
+     */
+    public int[] keysToArray() {
+        int[] keys = new int[size()];
+        int i = 0;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, keys, i, leaf.count);
+            i += leaf.count;
+        }
+        return keys;
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
+     */
+    public String[] infoToArray() {
+        String[] info = new String[size()];
+        int i = 0;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.values, 0, info, i, leaf.count);
+            i += leaf.count;
+        }
+        return info;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of items in the tree.
+     * Complexity: O(1)
+     */
+    public int size() {
+        return (root == null) ? 0 : root.size;
+    }
+
+    /**
+     * public BPlusTree[] split(int x)
+     * <p>
+     * splits the tree into 2 trees according to the key x.
+     * Returns an array [t1, t2] with two trees. keys(t1) < x < keys(t2).
+     * Unlike AVLTree, x does not have to be in the tree.
+     * The tree itself should not be used afterwards.
+     * Complexity: O(log n)
+     */
+    public BPlusTree[] split(int x) {
+        BPlusTree[] result = {new BPlusTree(), new BPlusTree()};
+        if (root == null) {
+            return result;
+        }
+        Inner[] path = new Inner[MAX_HEIGHT];
+        int[] pathIndex = new int[MAX_HEIGHT];
+        Leaf leaf = descend(x, path, pathIndex);
+
+        // cut the leaf, x itself is dropped
+        int cut = lowerBound(leaf.keys, leaf.count, x);
+        int rightFrom = ((cut < leaf.count) && (leaf.keys[cut] == x)) ? cut + 1 : cut;
+        Leaf rightLeaf = new Leaf();
+        rightLeaf.count = leaf.count - rightFrom;
+        rightLeaf.size = rightLeaf.count;
+        System.arraycopy(leaf.keys, rightFrom, rightLeaf.keys, 0, rightLeaf.count);
+        System.arraycopy(leaf.values, rightFrom, rightLeaf.values, 0, rightLeaf.count);
+        java.util.Arrays.fill(leaf.values, cut, leaf.count, null);
+        leaf.count = cut;
+        leaf.size = cut;
+        // cut the leaf list between the two sides
+        Leaf leftEnd = (cut > 0) ? leaf : leaf.prev;
+        Leaf rightStart = (rightLeaf.count > 0) ? rightLeaf : leaf.next;
+        if (rightLeaf.count > 0) {
+            rightLeaf.next = leaf.next;
+            if (leaf.next != null) {
+                leaf.next.prev = rightLeaf;
+            }
+        }
+        if (leftEnd != null) {
+            leftEnd.next = null;
+        }
+        if (rightStart != null) {
+            rightStart.prev = null;
+        }
+
+        BPlusTree left = result[0];
+        BPlusTree right = result[1];
+        if (cut > 0) {
+            left.root = leaf;
+            left.height = 0;
+        }
+        if (rightLeaf.count > 0) {
+            right.root = rightLeaf;
+            right.height = 0;
+        }
+        for (int level = 1; level <= height; level++) {
+            Inner node = path[level];
+            int i = pathIndex[level];
+            if (i > 0) {
+                // sons 0..i-1 are smaller than x
+                left.concatOnLeft(slice(node, 0, i), (i == 1) ? level - 1 : level);
+            }
+            if (i < node.count) {
+                // sons i+1..count are bigger than x, keys[i] separates them from the rest
+                right.concatOnRight(slice(node, i + 1, node.count + 1),
+                        (node.count - i == 1) ? level - 1 : level, node.keys[i]);
+            }
+        }
+        left.resetEnds();
+        right.resetEnds();
+        return result;
+    }
+
+    /**
+     * private Node slice(Inner node, int from, int to)
+     * <p>
+     * Returns a subtree made of node's sons from..to-1 and the keys between them.
+     * A single son is returned as it is.
+     * Complexity: O(MAX_KEYS)
+     */
+    private static Node slice(Inner node, int from, int to) {
+        if (to - from == 1) {
+            return node.children[from];
+        }
+        Inner piece = new Inner();
+        System.arraycopy(node.children, from, piece.children, 0, to - from);
+        System.arraycopy(node.keys, from, piece.keys, 0, to - from - 1);
+        piece.count = to - from - 1;
+        piece.updateSize();
+        return piece;
+    }
+
+    /**
+     * public int join(AVLTree.IAVLNode x, BPlusTree t)
+     * <p>
+     * joins t and x with the tree.
+     * Returns the complexity of the operation (|tree.height - t.height| + 1).
+     * t should not be used afterwards.
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (height = -1).
+     * Complexity: O(log n)
+     */
+    public int join(AVLTree.IAVLNode x, BPlusTree t) {
+        BPlusTree low = this;
+        BPlusTree high = t;
+        if ((!empty() && (x.getKey() < firstKey())) || (!t.empty() && (x.getKey() > t.firstKey()))) {
+            low = t;
+            high = this;
+        }
+        int cost = Math.abs(low.height - high.height) + 1;
+        if (low.empty()) {
+            high.insert(x.getKey(), x.getValue());
+            adopt(high);
+            return cost;
+        }
+        low.insert(x.getKey(), x.getValue());
+        if (!high.empty()) {
+            low.last.next = high.first;
+            high.first.prev = low.last;
+            low.concatOnRight(high.root, high.height, high.firstKey());
+            low.resetEnds();
+        }
+        adopt(low);
+        return cost;
+    }
+
+    /**
+     * private void adopt(BPlusTree t)
+     * <p>
+     * Makes the tree hold the items of t
+     * Complexity: O(1)
+     */
+    private void adopt(BPlusTree t) {
+        if (t != this) {
+            root = t.root;
+            height = t.height;
+            first = t.first;
+            last = t.last;
+        }
+    }
+
+    /**
+     * private void concatOnRight(Node piece, int pieceHeight, int separator)
+     * <p>
+     * Appends the subtree piece, whose keys are all bigger than the tree's, to the tree.
+     * separator is bigger than all keys in the tree and not bigger than the keys of piece.
+     * The leaf list is not touched.
+     * Complexity: O(|height - pieceHeight| + 1)
+     */
+    private void concatOnRight(Node piece, int pieceHeight, int separator) {
+        if (piece.size == 0) {
+            return;
+        }
+        if (root == null) {
+            root = piece;
+            height = pieceHeight;
+            return;
+        }
+        if (height <= pieceHeight) {
+            // hang the tree on the left spine of piece
+            Node oldRoot = root;
+            int oldHeight = height;
+            root = piece;
+            height = pieceHeight;
+            hangOnLeftSpine(oldRoot, oldHeight, separator);
+            return;
+        }
+        Inner[] path = new Inner[MAX_HEIGHT];
+        Node node = root;
+        for (int level = height; level > pieceHeight; level--) {
+            Inner inner = (Inner) node;
+            inner.size += piece.size;
+            path[level] = inner;
+            node = inner.children[inner.count];
+        }
+        Inner parent = path[pieceHeight + 1];
+        parent.keys[parent.count] = separator;
+        parent.children[parent.count + 1] = piece;
+        parent.count++;
+        if (piece.count < MIN_KEYS) {
+            rebalancePair(parent, parent.count - 1);
+        }
+        splitSpine(path, pieceHeight + 1, true);
+    }
+
+    /**
+     * private void concatOnLeft(Node piece, int pieceHeight)
+     * <p>
+     * Prepends the subtree piece, whose keys are all smaller than the tree's, to the tree.
+     * The leaf list is not touched.
+     * Complexity: O(|height - pieceHeight| + 1 + height)
+     */
+    private void concatOnLeft(Node piece, int pieceHeight) {
+        if (piece.size == 0) {
+            return;
+        }
+        if (root == null) {
+            root = piece;
+            height = pieceHeight;
+            return;
+        }
+        int separator = minKey(root, height);
+        if (height < pieceHeight) {
+            Node oldRoot = root;
+            int oldHeight = height;
+            root = piece;
+            height = pieceHeight;
+            concatOnRight(oldRoot, oldHeight, separator);
+            return;
+        }
+        hangOnLeftSpine(piece, pieceHeight, separator);
+    }
+
+    /**
+     * private void hangOnLeftSpine(Node piece, int pieceHeight, int separator)
+     * <p>
+     * Puts piece, whose keys are all smaller than separator and the tree's keys, as the
+     * first son of the node at height pieceHeight + 1 on the left spine.
+     * precondition: pieceHeight <= height
+     * Complexity: O(height - pieceHeight + 1)
+     */
+    private void hangOnLeftSpine(Node piece, int pieceHeight, int separator) {
+        if (pieceHeight == height) {
+            Inner newRoot = new Inner();
+            newRoot.children[0] = piece;
+            newRoot.children[1] = root;
+            newRoot.keys[0] = separator;
+            newRoot.count = 1;
+            newRoot.updateSize();
+            root = newRoot;
+            height++;
+            if ((piece.count < MIN_KEYS) || (newRoot.children[1].count < MIN_KEYS)) {
+                rebalancePair(newRoot, 0);
+                shrinkRoot();
+            }
+            return;
+        }
+        Inner[] path = new Inner[MAX_HEIGHT];
+        Node node = root;
+        for (int level = height; level > pieceHeight; level--) {
+            Inner inner = (Inner) node;
+            inner.size += piece.size;
+            path[level] = inner;
+            node = inner.children[0];
+        }
+        Inner parent = path[pieceHeight + 1];
+        insertIntoInner(parent, 0, separator, parent.children[0]);
+        parent.children[0] = piece;
+        if (piece.count < MIN_KEYS) {
+            rebalancePair(parent, 0);
+        }
+        splitSpine(path, pieceHeight + 1, false);
+    }
+
+    /**
+     * private void splitSpine(Inner[] path, int from, boolean rightSpine)
+     * <p>
+     * Splits overflowing nodes on a spine from height from up to the root.
+     * Complexity: O(height)
+     */
+    private void splitSpine(Inner[] path, int from, boolean rightSpine) {
+        int[] pathIndex = new int[MAX_HEIGHT];
+        for (int level = from + 1; level <= height; level++) {
+            pathIndex[level] = rightSpine ? path[level].count : 0;
+        }
+        splitUpwards(path[from], from, path, pathIndex);
+    }
+
+    /**
+     * private boolean rebalancePair(Inner parent, int j)
+     * <p>
+     * Makes both sons j and j+1 of parent at least half full: merges them if they fit
+     * in one node, otherwise spreads their keys evenly.
+     * Returns true if they were merged (parent lost a key).
+     * Complexity: O(MAX_KEYS)
+     */
+    private boolean rebalancePair(Inner parent, int j) {
+        Node left = parent.children[j];
+        Node right = parent.children[j + 1];
+        if (left instanceof Leaf) {
+            Leaf l = (Leaf) left;
+            Leaf r = (Leaf) right;
+            int total = l.count + r.count;
+            if (total <= MAX_KEYS) {
+                System.arraycopy(r.keys, 0, l.keys, l.count, r.count);
+                System.arraycopy(r.values, 0, l.values, l.count, r.count);
+                l.count = total;
+                l.size = total;
+                l.next = r.next;
+                if (r.next != null) {
+                    r.next.prev = l;
+                }
+                if (last == r) {
+                    last = l;
+                }
+                removeFromInner(parent, j);
+                return true;
+            }
+            int[] keys = new int[total];
+            String[] values = new String[total];
+            System.arraycopy(l.keys, 0, keys, 0, l.count);
+            System.arraycopy(l.values, 0, values, 0, l.count);
+            System.arraycopy(r.keys, 0, keys, l.count, r.count);
+            System.arraycopy(r.values, 0, values, l.count, r.count);
+            java.util.Arrays.fill(l.values, null);
+            java.util.Arrays.fill(r.values, null);
+            l.count = total / 2;
+            r.count = total - l.count;
+            System.arraycopy(keys, 0, l.keys, 0, l.count);
+            System.arraycopy(values, 0, l.values, 0, l.count);
+            System.arraycopy(keys, l.count, r.keys, 0, r.count);
+            System.arraycopy(values, l.count, r.values, 0, r.count);
+            l.size = l.count;
+            r.size = r.count;
+            parent.keys[j] = r.keys[0];
+            return false;
+        }
+        Inner l = (Inner) left;
+        Inner r = (Inner) right;
+        int total = l.count + r.count + 1;
+        if (total <= MAX_KEYS) {
+            l.keys[l.count] = parent.keys[j];
+            System.arraycopy(r.keys, 0, l.keys, l.count + 1, r.count);
+            System.arraycopy(r.children, 0, l.children, l.count + 1, r.count + 1);
+            l.count = total;
+            l.size += r.size;
+            removeFromInner(parent, j);
+            return true;
+        }
+        int[] keys = new int[total];
+        Node[] children = new Node[total + 1];
+        System.arraycopy(l.keys, 0, keys, 0, l.count);
+        keys[l.count] = parent.keys[j];
+        System.arraycopy(r.keys, 0, keys, l.count + 1, r.count);
+        System.arraycopy(l.children, 0, children, 0, l.count + 1);
+        System.arraycopy(r.children, 0, children, l.count + 1, r.count + 1);
+        java.util.Arrays.fill(l.children, null);
+        java.util.Arrays.fill(r.children, null);
+        l.count = total / 2;
+        r.count = total - l.count - 1;
+        System.arraycopy(keys, 0, l.keys, 0, l.count);
+        System.arraycopy(children, 0, l.children, 0, l.count + 1);
+        parent.keys[j] = keys[l.count];
+        System.arraycopy(keys, l.count + 1, r.keys, 0, r.count);
+        System.arraycopy(children, l.count + 1, r.children, 0, r.count + 1);
+        l.updateSize();
+        r.updateSize();
+        return false;
+    }
+
+    /**
+     * private void resetEnds()
+     * <p>
+     * Finds the first and last leaves by walking down the spines
+     * Complexity: O(log n)
+     */
+    private void resetEnds() {
+        shrinkRoot();
+        if (root == null) {
+            return;
+        }
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        first = (Leaf) node;
+        node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[node.count];
+        }
+        last = (Leaf) node;
+    }
+
+    /**
+     * private int firstKey()
+     * <p>
+     * Returns the smallest key in the tree
+     * precondition: !empty()
+     * Complexity: O(1)
+     */
+    private int firstKey() {
+        return first.keys[0];
+    }
+
+    /**
+     * private static int minKey(Node node, int nodeHeight)
+     * <p>
+     * Returns the smallest key in node's subtree
+     * Complexity: O(nodeHeight)
+     */
+    private static int minKey(Node node, int nodeHeight) {
+        for (int level = nodeHeight; level > 0; level--) {
+            node = ((Inner) node).children[0];
+        }
+        return node.keys[0];
+    }
+
+    private static void insertIntoLeaf(Leaf leaf, int pos, int k, String info) {
+        System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, leaf.count - pos);
+        System.arraycopy(leaf.values, pos, leaf.values, pos + 1, leaf.count - pos);
+        leaf.keys[pos] = k;
+        leaf.values[pos] = info;
+        leaf.count++;
+        leaf.size++;
+    }
+
+    private static void removeFromLeaf(Leaf leaf, int pos) {
+        System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, leaf.count - pos - 1);
+        System.arraycopy(leaf.values, pos + 1, leaf.values, pos, leaf.count - pos - 1);
+        leaf.count--;
+        leaf.size--;
+        leaf.values[leaf.count] = null;
+    }
+
+    /**
+     * private static void insertIntoInner(Inner node, int i, int separator, Node right)
+     * <p>
+     * Puts separator as keys[i] and right as the son after it, node's size is left as it is
+     * Complexity: O(MAX_KEYS)
+     */
+    private static void insertIntoInner(Inner node, int i, int separator, Node right) {
+        System.arraycopy(node.keys, i, node.keys, i + 1, node.count - i);
+        System.arraycopy(node.children, i + 1, node.children, i + 2, node.count - i);
+        node.keys[i] = separator;
+        node.children[i + 1] = right;
+        node.count++;
+    }
+
+    /**
+     * private static void removeFromInner(Inner node, int j)
+     * <p>
+     * Removes keys[j] and the son after it, whose items were moved to son j
+     * Complexity: O(MAX_KEYS)
+     */
+    private static void removeFromInner(Inner node, int j) {
+        System.arraycopy(node.keys, j + 1, node.keys, j, node.count - j - 1);
+        System.arraycopy(node.children, j + 2, node.children, j + 1, node.count - j - 1);
+        node.children[node.count] = null;
+        node.count--;
+    }
+
+    /**
+     * private static int lowerBound(int[] keys, int count, int k)
+     * <p>
+     * Returns the first index in keys[0..count-1] whose key is not smaller than k
+     * Complexity: O(log MAX_KEYS)
+     */
+    private static int lowerBound(int[] keys, int count, int k) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < k) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * private static int upperBound(int[] keys, int count, int k)
+     * <p>
+     * Returns the first index in keys[0..count-1] whose key is bigger than k,
+     * which is the son of an inner node that k belongs to
+     * Complexity: O(log MAX_KEYS)
+     */
+    private static int upperBound(int[] keys, int count, int k) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= k) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * private abstract static class Node
+     * <p>
+     * keys are sorted, count is the number of keys and size the number of items in the subtree.
+     * The arrays have room for one extra key so a node can overflow before it is split.
+     */
+    private abstract static class Node {
+        int[] keys = new int[MAX_KEYS + 1];
+        int count;
+        int size;
+    }
+
+    /**
+     * private static class Leaf
+     * <p>
+     * Holds count items, linked to the leaves before and after it.
+     */
+    private static class Leaf extends Node {
+        String[] values = new String[MAX_KEYS + 1];
+        Leaf prev;
+        Leaf next;
+    }
+
+    /**
+     * private static class Inner
+     * <p>
+     * children[i] holds the keys in [keys[i-1], keys[i]), it has count + 1 sons.
+     */
+    private static class Inner extends Node {
+        Node[] children = new Node[MAX_KEYS + 2];
+
+        void updateSize() {
+            size = 0;
+            for (int i = 0; i <= count; i++) {
+                size += children[i].size;
+            }
+        }
+    }
+
+}
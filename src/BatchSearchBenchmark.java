@@ -0,0 +1,58 @@
+import java.util.Random;
+
+/**
+ * BatchSearchBenchmark
+ *
+ * Compares AVLTree.searchAll with a loop of search on batches of random keys,
+ * half of them in the tree.
+ * usage: java BatchSearchBenchmark [n] [batch] [batches]
+ */
+public class BatchSearchBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int batch = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int batches = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        Random random = new Random(42);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < n; i++) {
+            tree.insert(random.nextInt(), "");
+        }
+        int[] keys = tree.keysToArray();
+        int[][] queries = new int[batches][batch];
+        for (int[] query : queries) {
+            for (int i = 0; i < batch; i++) {
+                query[i] = (i % 2 == 0) ? keys[random.nextInt(keys.length)] : random.nextInt();
+            }
+        }
+        String[] out = new String[batch];
+
+        long[] total = new long[2];
+        long found = 0;
+        for (int r = -1; r < 5; r++) {
+            // round -1 warms up both versions
+            long start = System.nanoTime();
+            for (int[] query : queries) {
+                for (int i = 0; i < batch; i++) {
+                    out[i] = tree.search(query[i]);
+                    found += (out[i] != null) ? 1 : 0;
+                }
+            }
+            long loop = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int[] query : queries) {
+                found += tree.searchAll(query, out);
+            }
+            long batched = System.nanoTime() - start;
+            if (r >= 0) {
+                total[0] += loop;
+                total[1] += batched;
+            }
+        }
+
+        long lookups = 5L * batch * batches;
+        System.out.println("n = " + tree.size() + ", batch = " + batch + ", batches = " + batches + " (" + found + ")");
+        System.out.printf("%-12s %12.1f M/s%n", "search loop", (double) lookups / total[0] * 1e3);
+        System.out.printf("%-12s %12.1f M/s%n", "searchAll", (double) lookups / total[1] * 1e3);
+    }
+}
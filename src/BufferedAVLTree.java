@@ -0,0 +1,281 @@
+import java.util.Arrays;
+
+/**
+ *
+ * BufferedAVLTree
+ *
+ * An AVLTree with a write buffer in front of it. New items are appended to the buffer instead
+ * of going down the tree, and a NodeIndex over the buffered nodes lets search see them at once.
+ * When the buffer is full its items are sorted and merged into the tree in one pass in key order
+ * with AVLTree.insertSorted, where each key is looked for from the node of the key before it,
+ * so the merge walks the tree once from left to right instead of descending from the root per key.
+ * insert does not look for its key in the tree: a buffered key that is already there is
+ * skipped by the merge, like AVLTree.insert skips it, and until then the tree's item is the one
+ * that search, min and max return.
+ *
+ */
+
+public class BufferedAVLTree {
+
+    private final AVLTree tree;
+    // the buffered nodes in the order of their inserts, a node that is not in bufferIndex was deleted
+    private final AVLTree.AVLNode[] buffer;
+    private int count;
+    private final NodeIndex bufferIndex;
+    // the smallest and largest buffered keys, found again by a scan when one of them was deleted
+    private int bufferMin;
+    private int bufferMax;
+    private boolean boundsStale;
+    // the buffered items in key order during a merge, kept for the next one
+    private final long[] mergeOrder;
+    private final int[] mergeKeys;
+    private final String[] mergeInfo;
+    private long flushes;
+
+    /**
+     * public BufferedAVLTree(AVLTree tree, int capacity)
+     * <p>
+     * Puts a buffer of capacity items in front of tree. The tree should only be changed
+     * through the BufferedAVLTree afterwards.
+     * precondition: capacity >= 1
+     */
+    public BufferedAVLTree(AVLTree tree, int capacity) {
+        this.tree = tree;
+        this.buffer = new AVLTree.AVLNode[capacity];
+        this.bufferIndex = new NodeIndex();
+        this.mergeOrder = new long[capacity];
+        this.mergeKeys = new int[capacity];
+        this.mergeInfo = new String[capacity];
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of key k from the tree or the buffer, or null if it is in neither.
+     * Complexity: O(log n)
+     */
+    public String search(int k) {
+        String info = tree.search(k);
+        if ((info != null) || (bufferIndex.size() == 0)) {
+            return info;
+        }
+        AVLTree.IAVLNodeOur node = bufferIndex.get(k);
+        return (node != null) ? node.getValue() : null;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * Appends the item to the buffer, and merges the buffer into the tree first if it is full.
+     * Returns 0, or -1 if key k is already in the buffer. A key that is in the tree is found
+     * by the merge, which leaves the tree's item.
+     * Complexity: O(1) expected, plus the merge when the buffer is full
+     */
+    public int insert(int k, String i) {
+        if (bufferIndex.get(k) != null) {
+            return -1;
+        }
+        if (count == buffer.length) {
+            flush();
+        }
+        AVLTree.AVLNode node = new AVLTree.AVLNode(k, i);
+        buffer[count++] = node;
+        bufferIndex.put(node);
+        if ((bufferIndex.size() == 1) || (k < bufferMin)) {
+            bufferMin = k;
+        }
+        if ((bufferIndex.size() == 1) || (k > bufferMax)) {
+            bufferMax = k;
+        }
+        return 0;
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * Deletes the item with key k from the tree and the buffer.
+     * Returns what AVLTree.delete returns for the tree if k was there, otherwise 0 if k was
+     * buffered or -1 if it was in neither.
+     * Complexity: O(log n)
+     */
+    public int delete(int k) {
+        boolean buffered = bufferIndex.get(k) != null;
+        if (buffered) {
+            bufferIndex.remove(k);
+            boundsStale = boundsStale || (k == bufferMin) || (k == bufferMax);
+        }
+        int result = tree.delete(k);
+        if (result >= 0) {
+            return result;
+        }
+        return buffered ? 0 : -1;
+    }
+
+    /**
+     * public void flush()
+     * <p>
+     * Sorts the buffered items and merges them into the tree, and empties the buffer
+     * Complexity: O(m log m) for the sort and O(m log (n / m + 1)) for the merge of m buffered items,
+     * see AVLTree.insertSorted
+     */
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        // the key in the high half and the buffer position in the low half, like searchAll's probes
+        int m = 0;
+        for (int j = 0; j < count; j++) {
+            if (isBuffered(buffer[j])) {
+                mergeOrder[m++] = ((long) buffer[j].getKey() << 32) | j;
+            }
+        }
+        Arrays.sort(mergeOrder, 0, m);
+        for (int j = 0; j < m; j++) {
+            AVLTree.AVLNode node = buffer[(int) mergeOrder[j]];
+            mergeKeys[j] = node.getKey();
+            mergeInfo[j] = node.getValue();
+        }
+        tree.insertSorted(mergeKeys, mergeInfo, m);
+        Arrays.fill(mergeInfo, 0, m, null);
+        Arrays.fill(buffer, 0, count, null);
+        count = 0;
+        bufferIndex.clear();
+        boundsStale = false;
+        flushes++;
+    }
+
+    private boolean isBuffered(AVLTree.AVLNode node) {
+        return bufferIndex.get(node.getKey()) == node;
+    }
+
+    /**
+     * private void findBounds()
+     * <p>
+     * Finds the smallest and largest buffered keys again after one of them was deleted
+     * Complexity: O(capacity)
+     */
+    private void findBounds() {
+        boolean first = true;
+        for (int j = 0; j < count; j++) {
+            if (isBuffered(buffer[j])) {
+                int k = buffer[j].getKey();
+                bufferMin = first ? k : Math.min(bufferMin, k);
+                bufferMax = first ? k : Math.max(bufferMax, k);
+                first = false;
+            }
+        }
+        boundsStale = false;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of items. The buffer is merged first, since some of its keys may be in the tree
+     * Complexity: O(1), plus the merge if there are buffered items
+     */
+    public int size() {
+        flush();
+        return tree.size();
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * Returns true if and only if there are no items
+     * Complexity: O(1)
+     */
+    public boolean empty() {
+        return (bufferIndex.size() == 0) && tree.empty();
+    }
+
+    /**
+     * public String min()
+     * <p>
+     * Returns the info of the item with the smallest key, or null if there are no items
+     * Complexity: O(1), O(capacity) after the smallest buffered key was deleted
+     */
+    public String min() {
+        if (bufferIndex.size() == 0) {
+            return tree.min();
+        }
+        if (boundsStale) {
+            findBounds();
+        }
+        if (tree.empty() || bufferMin < tree.peekMinKey()) {
+            return bufferIndex.get(bufferMin).getValue();
+        }
+        return tree.min();
+    }
+
+    /**
+     * public String max()
+     * <p>
+     * Returns the info of the item with the largest key, or null if there are no items
+     * Complexity: O(1), O(capacity) after the largest buffered key was deleted
+     */
+    public String max() {
+        if (bufferIndex.size() == 0) {
+            return tree.max();
+        }
+        if (boundsStale) {
+            findBounds();
+        }
+        if (tree.empty() || bufferMax > tree.peekMaxKey()) {
+            return bufferIndex.get(bufferMax).getValue();
+        }
+        return tree.max();
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns the sorted keys of all items, the buffer is merged first
+     * Complexity: O(n)
+     */
+    public int[] keysToArray() {
+        flush();
+        return tree.keysToArray();
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns the infos of all items sorted by key, the buffer is merged first
+     * Complexity: O(n)
+     */
+    public String[] infoToArray() {
+        flush();
+        return tree.infoToArray();
+    }
+
+    /**
+     * public AVLTree getTree()
+     * <p>
+     * Merges the buffer and returns the tree, for the operations the buffer does not have
+     * Complexity: O(m log m + m log (n / m + 1)) for m buffered items
+     */
+    public AVLTree getTree() {
+        flush();
+        return tree;
+    }
+
+    /**
+     * public int buffered()
+     * <p>
+     * Returns the number of items waiting in the buffer
+     * Complexity: O(1)
+     */
+    public int buffered() {
+        return bufferIndex.size();
+    }
+
+    /**
+     * public long flushes()
+     * <p>
+     * Returns the number of merges of a non empty buffer so far
+     * Complexity: O(1)
+     */
+    public long flushes() {
+        return flushes;
+    }
+}
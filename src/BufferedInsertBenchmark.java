@@ -0,0 +1,71 @@
+import java.util.Random;
+
+/**
+ * BufferedInsertBenchmark
+ *
+ * Inserts m random keys into a tree that already has n random keys, once with AVLTree.insert
+ * and once through a BufferedAVLTree for a few buffer sizes, including the last flush.
+ * usage: java BufferedInsertBenchmark [n] [m] [rounds]
+ */
+public class BufferedInsertBenchmark {
+
+    private static final int[] CAPACITIES = {4096, 65536, 262144};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        Random random = new Random(42);
+        int[] base = new int[n];
+        for (int i = 0; i < n; i++) {
+            base[i] = random.nextInt();
+        }
+        int[] added = new int[m];
+        for (int i = 0; i < m; i++) {
+            added[i] = random.nextInt();
+        }
+
+        long[] total = new long[CAPACITIES.length + 1];
+        long check = 0;
+        for (int r = -1; r < rounds; r++) {
+            // round -1 warms up all versions
+            AVLTree tree = baseTree(base);
+            long start = System.nanoTime();
+            for (int k : added) {
+                tree.insert(k, "");
+            }
+            long plain = System.nanoTime() - start;
+            check += tree.size();
+            if (r >= 0) {
+                total[0] += plain;
+            }
+            for (int c = 0; c < CAPACITIES.length; c++) {
+                BufferedAVLTree buffered = new BufferedAVLTree(baseTree(base), CAPACITIES[c]);
+                start = System.nanoTime();
+                for (int k : added) {
+                    buffered.insert(k, "");
+                }
+                buffered.flush();
+                long time = System.nanoTime() - start;
+                check += buffered.size();
+                if (r >= 0) {
+                    total[c + 1] += time;
+                }
+            }
+        }
+
+        System.out.println("n = " + n + ", m = " + m + ", rounds = " + rounds + " (" + check + ")");
+        System.out.printf("%-18s %10.2f M/s%n", "insert", (double) m * rounds / total[0] * 1e3);
+        for (int c = 0; c < CAPACITIES.length; c++) {
+            System.out.printf("%-18s %10.2f M/s%n", "buffered " + CAPACITIES[c], (double) m * rounds / total[c + 1] * 1e3);
+        }
+    }
+
+    private static AVLTree baseTree(int[] base) {
+        AVLTree tree = new AVLTree();
+        for (int k : base) {
+            tree.insert(k, "");
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,299 @@
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *
+ * CombiningAVLTree
+ *
+ * An AVLTree that many threads can use at once through flat combining. A thread does not take a lock
+ * around its operation: it writes the operation into its own slot and waits. Whichever waiting thread
+ * gets the combiner flag first becomes the combiner, collects the pending operations of all slots,
+ * sorts them by key and applies them to the tree one after another, writing every result back into
+ * its slot. The tree is only touched by one thread at a time and stays in that thread's cache for
+ * the whole batch, instead of the lock and the tree moving between cores on every operation.
+ * Operations that wait together are concurrent, so applying them in key order is a valid order.
+ * A thread gets a slot on its first operation; when all slots are taken, further threads wait for
+ * the combiner flag and apply their operations themselves after serving the slots.
+ * The slot of a thread that ended goes to the next thread that finds no free one, so a pool that
+ * replaces its workers keeps combining. Until then combine still scans the slot, it is never pending.
+ *
+ */
+
+public class CombiningAVLTree {
+
+    private static final int SEARCH = 0;
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int SIZE = 3;
+    // spins on the slot before a waiting thread gives its core away
+    private static final int SPINS = 64;
+
+    private final AVLTree tree;
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicInteger registered = new AtomicInteger();
+    private final ThreadLocal<Slot> threadSlot = ThreadLocal.withInitial(this::register);
+    // held by the combiner, it hands the tree from one combiner to the next
+    private final AtomicBoolean combining = new AtomicBoolean();
+    // the pending operations of a pass: the key in the high half and the slot in the low half, combiner only
+    private final long[] batch;
+    // written by the combiner only
+    private volatile long combines;
+    private volatile long combined;
+
+    /**
+     * public CombiningAVLTree(AVLTree tree, int maxThreads)
+     * <p>
+     * Shares tree between threads, with a slot for each of the first maxThreads threads that use it.
+     * The tree should only be used through the CombiningAVLTree afterwards.
+     * precondition: maxThreads >= 1
+     */
+    public CombiningAVLTree(AVLTree tree, int maxThreads) {
+        this.tree = tree;
+        this.slots = new AtomicReferenceArray<>(maxThreads);
+        this.batch = new long[maxThreads];
+    }
+
+    private Slot register() {
+        int i = registered.getAndIncrement();
+        if (i >= slots.length()) {
+            return reclaim();
+        }
+        Slot slot = new Slot(Thread.currentThread());
+        slots.set(i, slot);
+        return slot;
+    }
+
+    /**
+     * private Slot reclaim()
+     * <p>
+     * Gives the calling thread the slot of a thread that ended, or returns null if the threads
+     * of all slots are alive
+     * Complexity: O(maxThreads)
+     */
+    private Slot reclaim() {
+        for (int s = 0; s < slots.length(); s++) {
+            Slot old = slots.get(s);
+            if ((old != null) && !old.pending && !old.isOwnerAlive()) {
+                Slot slot = new Slot(Thread.currentThread());
+                if (slots.compareAndSet(s, old, slot)) {
+                    return slot;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * AVLTree.search, applied by the combiner
+     * Complexity: O(log n), plus the wait for the batch
+     */
+    public String search(int k) {
+        return apply(SEARCH, k, null).resultInfo;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * AVLTree.insert, applied by the combiner
+     * Complexity: O(log n), plus the wait for the batch
+     */
+    public int insert(int k, String i) {
+        return apply(INSERT, k, i).result;
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * AVLTree.delete, applied by the combiner
+     * Complexity: O(log n), plus the wait for the batch
+     */
+    public int delete(int k) {
+        return apply(DELETE, k, null).result;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * AVLTree.size, applied by the combiner
+     * Complexity: O(1), plus the wait for the batch
+     */
+    public int size() {
+        return apply(SIZE, 0, null).result;
+    }
+
+    /**
+     * private Slot apply(int op, int k, String i)
+     * <p>
+     * Publishes the operation in the thread's slot and waits until a combiner, maybe this thread,
+     * has applied it. Returns the slot, which holds the result until the thread's next operation.
+     * Complexity: O(log n) for the operation, O(P log n) for a pass over P pending operations
+     */
+    private Slot apply(int op, int k, String i) {
+        Slot slot = threadSlot.get();
+        if (slot == null) {
+            // a thread that ended since the last try may have left its slot
+            slot = reclaim();
+            if (slot != null) {
+                threadSlot.set(slot);
+            }
+        }
+        if (slot == null) {
+            // no slot left: serve the others and then run the operation under the flag
+            slot = new Slot(Thread.currentThread());
+            slot.set(op, k, i);
+            int spins = 0;
+            while (!combining.compareAndSet(false, true)) {
+                spins = backOff(spins);
+            }
+            try {
+                combine();
+                execute(slot);
+            }
+            finally {
+                combining.set(false);
+            }
+            return slot;
+        }
+        slot.set(op, k, i);
+        slot.pending = true;
+        int spins = 0;
+        while (slot.pending) {
+            if (!combining.get() && combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                }
+                finally {
+                    combining.set(false);
+                }
+            }
+            else {
+                spins = backOff(spins);
+            }
+        }
+        return slot;
+    }
+
+    private static int backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+            return spins + 1;
+        }
+        Thread.yield();
+        return spins;
+    }
+
+    /**
+     * private void combine()
+     * <p>
+     * One combining pass: applies the pending operations of all slots in key order and releases their threads
+     * precondition: the thread holds the combiner flag
+     * Complexity: O(P log P + P log n) for P pending operations
+     */
+    private void combine() {
+        int count = Math.min(registered.get(), slots.length());
+        int m = 0;
+        for (int s = 0; s < count; s++) {
+            Slot slot = slots.get(s);
+            if ((slot != null) && slot.pending) {
+                batch[m++] = ((long) slot.key << 32) | s;
+            }
+        }
+        Arrays.sort(batch, 0, m);
+        for (int j = 0; j < m; j++) {
+            Slot slot = slots.get((int) batch[j]);
+            execute(slot);
+            slot.pending = false;
+        }
+        if (m > 0) {
+            combines++;
+            combined += m;
+        }
+    }
+
+    private void execute(Slot slot) {
+        switch (slot.op) {
+            case SEARCH:
+                slot.resultInfo = tree.search(slot.key);
+                break;
+            case INSERT:
+                slot.result = tree.insert(slot.key, slot.info);
+                break;
+            case DELETE:
+                slot.result = tree.delete(slot.key);
+                break;
+            default:
+                slot.result = tree.size();
+                break;
+        }
+        slot.info = null;
+    }
+
+    /**
+     * public long combines()
+     * <p>
+     * Returns the number of combining passes that applied at least one operation
+     * Complexity: O(1)
+     */
+    public long combines() {
+        return combines;
+    }
+
+    /**
+     * public double averageBatch()
+     * <p>
+     * Returns the average number of operations a combining pass applied, 0 before the first one
+     * Complexity: O(1)
+     */
+    public double averageBatch() {
+        long passes = combines;
+        return (passes == 0) ? 0 : (double) combined / passes;
+    }
+
+    /**
+     * public AVLTree getTree()
+     * <p>
+     * Returns the tree, for when no other thread uses the CombiningAVLTree
+     * Complexity: O(1)
+     */
+    public AVLTree getTree() {
+        return tree;
+    }
+
+    /**
+     * private static class Slot
+     *
+     * The operation of one thread and its result. The fields are written by the owner before it sets
+     * pending and by the combiner before it clears it, so the volatile flag publishes them both ways.
+     * The owner is held weakly, so the slot does not keep an ended thread alive.
+     */
+    private static class Slot {
+        private final WeakReference<Thread> owner;
+        private int op;
+        private int key;
+        private String info;
+        private int result;
+        private String resultInfo;
+        private volatile boolean pending;
+
+        private Slot(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return (thread != null) && thread.isAlive();
+        }
+
+        private void set(int op, int key, String info) {
+            this.op = op;
+            this.key = key;
+            this.info = info;
+            this.resultInfo = null;
+        }
+    }
+}
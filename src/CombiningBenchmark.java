@@ -0,0 +1,146 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CombiningBenchmark
+ *
+ * Runs threads that search, insert and delete random keys for a fixed time on three shared trees:
+ * one AVLTree behind a lock, STRIPES AVLTrees each behind its own lock with the keys spread by hash,
+ * and a CombiningAVLTree. Prints the operations per second for 1 to 64 threads.
+ * usage: java CombiningBenchmark [keyRange] [searchPercent] [millis]
+ */
+public class CombiningBenchmark {
+
+    private static final int STRIPES = 16;
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private interface SharedTree {
+        String search(int k);
+        int insert(int k, String i);
+        int delete(int k);
+    }
+
+    private static class LockedTree implements SharedTree {
+        private final AVLTree tree = new AVLTree();
+
+        public synchronized String search(int k) {
+            return tree.search(k);
+        }
+        public synchronized int insert(int k, String i) {
+            return tree.insert(k, i);
+        }
+        public synchronized int delete(int k) {
+            return tree.delete(k);
+        }
+    }
+
+    private static class StripedTree implements SharedTree {
+        private final LockedTree[] stripes = new LockedTree[STRIPES];
+
+        StripedTree() {
+            for (int s = 0; s < STRIPES; s++) {
+                stripes[s] = new LockedTree();
+            }
+        }
+        private LockedTree stripe(int k) {
+            return stripes[(k * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(STRIPES))];
+        }
+        public String search(int k) {
+            return stripe(k).search(k);
+        }
+        public int insert(int k, String i) {
+            return stripe(k).insert(k, i);
+        }
+        public int delete(int k) {
+            return stripe(k).delete(k);
+        }
+    }
+
+    private static class CombinedTree implements SharedTree {
+        private final CombiningAVLTree tree = new CombiningAVLTree(new AVLTree(), 128);
+
+        public String search(int k) {
+            return tree.search(k);
+        }
+        public int insert(int k, String i) {
+            return tree.insert(k, i);
+        }
+        public int delete(int k) {
+            return tree.delete(k);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int keyRange = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int searchPercent = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        System.out.println("keys < " + keyRange + ", " + searchPercent + "% searches, "
+                + millis + " ms per run, " + Runtime.getRuntime().availableProcessors() + " cpus");
+        System.out.printf("%-8s %14s %14s %14s%n", "threads", "lock", "striped", "combining");
+        // the first row warms up all versions
+        run(1, keyRange, searchPercent, millis);
+        for (int threads : THREADS) {
+            double[] rates = run(threads, keyRange, searchPercent, millis);
+            System.out.printf("%-8d %10.2f M/s %10.2f M/s %10.2f M/s%n", threads, rates[0], rates[1], rates[2]);
+        }
+    }
+
+    private static double[] run(int threads, int keyRange, int searchPercent, long millis) throws InterruptedException {
+        SharedTree[] trees = {new LockedTree(), new StripedTree(), new CombinedTree()};
+        double[] rates = new double[trees.length];
+        for (int t = 0; t < trees.length; t++) {
+            SharedTree tree = trees[t];
+            for (int k = 0; k < keyRange; k += 2) {
+                tree.insert(k, "");
+            }
+            rates[t] = measure(tree, threads, keyRange, searchPercent, millis);
+        }
+        return rates;
+    }
+
+    private static double measure(SharedTree tree, int threads, int keyRange, int searchPercent, long millis)
+            throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    int k = random.nextInt(keyRange);
+                    int op = random.nextInt(100);
+                    if (op < searchPercent) {
+                        tree.search(k);
+                    }
+                    else if ((op & 1) == 0) {
+                        tree.insert(k, "");
+                    }
+                    else {
+                        tree.delete(k);
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            workers[w].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - begin) / 1e9) / 1e6;
+    }
+}
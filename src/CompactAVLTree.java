@@ -0,0 +1,568 @@
+/**
+ *
+ * CompactAVLTree
+ *
+ * An AVL tree with distinct integer keys and info, with the same public operations as AVLTree,
+ * whose nodes have no parent pointer and no subtree size.
+ * Insert, delete and split record their descent in a stack that is kept by the tree and reused,
+ * and rebalance by walking it back up. Iteration uses the same stack.
+ * A node is a key, an info, two sons and a one byte rank: 32 bytes with compressed references
+ * (40 for AVLTree.AVLNode) and 48 without them (64 for AVLTree.AVLNode).
+ * Without subtree sizes the trees made by split and join count their items on the first size().
+ *
+ */
+
+public class CompactAVLTree {
+
+    private static final Node virtualNode = new Node();
+    // an AVL tree of 2^31 items is lower than 46
+    private static final int INITIAL_PATH_LENGTH = 48;
+
+    private Node root;
+    private Node min;
+    private Node max;
+    // number of items, -1 if it is not known (after split and join of trees of unknown size)
+    private int count;
+    // the descent of the last operation, path[0] is the root
+    private Node[] path;
+    private int depth;
+
+    public CompactAVLTree() {
+        root = virtualNode;
+        min = null;
+        max = null;
+        count = 0;
+        path = new Node[INITIAL_PATH_LENGTH];
+        depth = 0;
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * Returns true if and only if the tree is empty.
+     * complexity: O(1)
+     */
+    public boolean empty() {
+        return !root.isRealNode();
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of an item with key k if it exists in the tree.
+     * otherwise, returns null.
+     * complexity: O(log n)
+     */
+    public String search(int k) {
+        Node x = root;
+        while (x.isRealNode()) {
+            if (k == x.key) {
+                return x.value;
+            }
+            x = (k < x.key) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * private Node descend(int k)
+     * <p>
+     * Records the path from the root to the node with key k and returns that node,
+     * or the virtual node if k is not in the tree. The path then ends at the node
+     * that should be k's parent.
+     * Complexity: O(log n)
+     */
+    private Node descend(int k) {
+        depth = 0;
+        Node x = root;
+        while (x.isRealNode()) {
+            push(x);
+            if (k == x.key) {
+                return x;
+            }
+            x = (k < x.key) ? x.left : x.right;
+        }
+        return x;
+    }
+
+    private void push(Node node) {
+        if (depth == path.length) {
+            Node[] longer = new Node[2 * path.length];
+            System.arraycopy(path, 0, longer, 0, depth);
+            path = longer;
+        }
+        path[depth++] = node;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * Inserts an item with key k and info i to the tree.
+     * Returns the number of re-balancing operations (a promotion, demotion or rotation counts as one,
+     * double-rotation is counted as 2), or -1 if an item with key k already exists in the tree.
+     * Complexity: O(log n)
+     */
+    public int insert(int k, String i) {
+        if (descend(k).isRealNode()) {
+            return -1;
+        }
+        Node node = new Node(k, i);
+        if (count >= 0) {
+            count++;
+        }
+        if ((min == null) || (k < min.key)) {
+            min = node;
+        }
+        if ((max == null) || (k > max.key)) {
+            max = node;
+        }
+        if (depth == 0) {
+            root = node;
+            return 0;
+        }
+        Node parent = path[depth - 1];
+        if (k < parent.key) {
+            parent.left = node;
+        }
+        else {
+            parent.right = node;
+        }
+        return rebalanceUp(depth - 1);
+    }
+
+    /**
+     * public int delete(int k)
+     *
+     * Deletes an item with key k from the tree, if it is there.
+     * Returns the number of re-balancing operations, or -1 if an item with key k was not found in the tree.
+     * Complexity: O(log n)
+     */
+    public int delete(int k) {
+        Node x = descend(k);
+        if (!x.isRealNode()) {
+            return -1;
+        }
+        if (count > 0) {
+            count--;
+        }
+        Node removed = x;
+        if (x.left.isRealNode() && x.right.isRealNode()) {
+            // the successor takes x's place by moving its item into x, then its own node goes
+            removed = x.right;
+            push(removed);
+            while (removed.left.isRealNode()) {
+                removed = removed.left;
+                push(removed);
+            }
+            x.key = removed.key;
+            x.value = removed.value;
+        }
+        Node son = removed.left.isRealNode() ? removed.left : removed.right;
+        depth--;
+        replaceSon(depth - 1, removed, son);
+        if ((min == x) || (min == removed)) {
+            min = empty() ? null : getMinNode(root);
+        }
+        if ((max == x) || (max == removed)) {
+            max = empty() ? null : getMaxNode(root);
+        }
+        return rebalanceUp(depth - 1);
+    }
+
+    /**
+     * private void replaceSon(int i, Node oldSon, Node newSon)
+     * <p>
+     * Hangs newSon instead of oldSon under path[i], or as the root if i is -1
+     * Complexity: O(1)
+     */
+    private void replaceSon(int i, Node oldSon, Node newSon) {
+        if (i < 0) {
+            root = newSon;
+        }
+        else if (path[i].left == oldSon) {
+            path[i].left = newSon;
+        }
+        else {
+            path[i].right = newSon;
+        }
+    }
+
+    /**
+     * private int rebalanceUp(int i)
+     * <p>
+     * Walks the recorded path up from path[i], fixing ranks and rotating where a son is two ranks
+     * higher than its sibling, until a node keeps its rank.
+     * Returns the number of re-balancing operations done
+     * Complexity: O(log n)
+     */
+    private int rebalanceUp(int i) {
+        int counter = 0;
+        for (; i >= 0; i--) {
+            Node node = path[i];
+            int oldRank = node.rank;
+            Node top = node;
+            int balance = node.left.rank - node.right.rank;
+            if (balance > 1) {
+                if (node.left.right.rank > node.left.left.rank) {
+                    node.left = rotateLeft(node.left);
+                    counter++;
+                }
+                top = rotateRight(node);
+                counter++;
+            }
+            else if (balance < -1) {
+                if (node.right.left.rank > node.right.right.rank) {
+                    node.right = rotateRight(node.right);
+                    counter++;
+                }
+                top = rotateLeft(node);
+                counter++;
+            }
+            else {
+                updateRank(node);
+            }
+            if (top != node) {
+                replaceSon(i - 1, node, top);
+            }
+            else if (node.rank == oldRank) {
+                return counter;
+            }
+            if (top.rank != oldRank) {
+                counter++;
+            }
+        }
+        return counter;
+    }
+
+    private static void updateRank(Node node) {
+        node.rank = (byte) (Math.max(node.left.rank, node.right.rank) + 1);
+    }
+
+    /**
+     * private static Node rotateRight(Node node)
+     * <p>
+     * Rotates node's left son above it and returns the son
+     * Complexity: O(1)
+     */
+    private static Node rotateRight(Node node) {
+        Node son = node.left;
+        node.left = son.right;
+        son.right = node;
+        updateRank(node);
+        updateRank(son);
+        return son;
+    }
+
+    /**
+     * private static Node rotateLeft(Node node)
+     * <p>
+     * Rotates node's right son above it and returns the son
+     * Complexity: O(1)
+     */
+    private static Node rotateLeft(Node node) {
+        Node son = node.right;
+        node.right = son.left;
+        son.left = node;
+        updateRank(node);
+        updateRank(son);
+        return son;
+    }
+
+    private static Node getMinNode(Node node) {
+        while (node.left.isRealNode()) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static Node getMaxNode(Node node) {
+        while (node.right.isRealNode()) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * public String min()
+     *
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public String min() {
+        return (min == null) ? null : min.value;
+    }
+
+    /**
+     * public String max()
+     *
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public String max() {
+        return (max == null) ? null : max.value;
+    }
+
+    /**
+     * public int[] keysToArray()
+     *
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
+     */
+    public int[] keysToArray() {
+        int[] keys = new int[size()];
+        int i = 0;
+        for (Node node = first(); node != null; node = next()) {
+            keys[i++] = node.key;
+        }
+        return keys;
+    }
+
+    /**
+     * public String[] infoToArray()
+     *
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
+     */
+    public String[] infoToArray() {
+        String[] info = new String[size()];
+        int i = 0;
+        for (Node node = first(); node != null; node = next()) {
+            info[i++] = node.value;
+        }
+        return info;
+    }
+
+    /**
+     * private Node first()
+     * <p>
+     * Starts an in-order walk on the path stack and returns the first node, or null if the tree is empty.
+     * The stack holds the nodes whose right subtree is not walked yet.
+     * Complexity: O(log n)
+     */
+    private Node first() {
+        depth = 0;
+        pushLeftSpine(root);
+        return (depth == 0) ? null : path[depth - 1];
+    }
+
+    /**
+     * private Node next()
+     * <p>
+     * Returns the next node of the in-order walk, or null at the end
+     * Complexity: O(1) amortized
+     */
+    private Node next() {
+        Node done = path[--depth];
+        pushLeftSpine(done.right);
+        return (depth == 0) ? null : path[depth - 1];
+    }
+
+    private void pushLeftSpine(Node node) {
+        while (node.isRealNode()) {
+            push(node);
+            node = node.left;
+        }
+    }
+
+    /**
+     * public int size()
+     *
+     * Returns the number of nodes in the tree.
+     * Complexity: O(1), O(n) for the first call on a tree made by split or join
+     */
+    public int size() {
+        if (count < 0) {
+            count = 0;
+            for (Node node = first(); node != null; node = next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * public Node getRoot()
+     *
+     * Returns the root node, or a virtual node if the tree is empty
+     * Complexity: O(1)
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * public CompactAVLTree[] split(int x)
+     *
+     * splits the tree into 2 trees according to the key x.
+     * Returns an array [t1, t2] with two trees. keys(t1) < x < keys(t2). x does not have to be in the tree.
+     * Walks the recorded path from x up, joining the subtrees on each side.
+     * Complexity: O(log n)
+     */
+    public CompactAVLTree[] split(int x) {
+        Node nodeX = descend(x);
+        Node left = nodeX.left;
+        Node right = nodeX.right;
+        if (!nodeX.isRealNode()) {
+            left = virtualNode;
+            right = virtualNode;
+        }
+        int i = nodeX.isRealNode() ? depth - 2 : depth - 1;
+        for (; i >= 0; i--) {
+            Node node = path[i];
+            if (x > node.key) {
+                left = joinNodes(node.left, node, left);
+            }
+            else {
+                right = joinNodes(right, node, node.right);
+            }
+        }
+        CompactAVLTree[] result = {new CompactAVLTree(), new CompactAVLTree()};
+        result[0].setRoot(left);
+        result[1].setRoot(right);
+        return result;
+    }
+
+    /**
+     * private void setRoot(Node node)
+     * <p>
+     * Makes node the root of the tree, the number of items is counted when it is needed
+     * Complexity: O(log n)
+     */
+    private void setRoot(Node node) {
+        root = node;
+        if (node.isRealNode()) {
+            min = getMinNode(node);
+            max = getMaxNode(node);
+            count = -1;
+        }
+        else {
+            min = null;
+            max = null;
+            count = 0;
+        }
+    }
+
+    /**
+     * public int join(Node x, CompactAVLTree t)
+     *
+     * joins t and x with the tree.
+     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
+     * Complexity: O(log n)
+     */
+    public int join(Node x, CompactAVLTree t) {
+        int result = Math.abs(root.rank - t.root.rank) + 1;
+        boolean tIsLeft = (root.isRealNode() && x.key < root.key) || (t.root.isRealNode() && x.key > t.root.key);
+        CompactAVLTree low = tIsLeft ? t : this;
+        CompactAVLTree high = tIsLeft ? this : t;
+        Node newMin = (low.min == null) ? x : low.min;
+        Node newMax = (high.max == null) ? x : high.max;
+        int newCount = (count < 0 || t.count < 0) ? -1 : count + t.count + 1;
+        root = joinNodes(low.root, x, high.root);
+        min = newMin;
+        max = newMax;
+        count = newCount;
+        return result;
+    }
+
+    /**
+     * private static Node joinNodes(Node low, Node x, Node high)
+     * <p>
+     * Returns the root of a balanced tree of low, x and high.
+     * x goes down the spine of the higher tree to the first node whose rank is at most
+     * the lower tree's rank + 1, and the spine is rebalanced on the way back.
+     * precondition: keys(low) < x < keys(high)
+     * Complexity: O(|low.rank - high.rank| + 1)
+     */
+    private static Node joinNodes(Node low, Node x, Node high) {
+        if (low.rank > high.rank + 1) {
+            low.right = joinNodes(low.right, x, high);
+            return rebalanceNode(low);
+        }
+        if (high.rank > low.rank + 1) {
+            high.left = joinNodes(low, x, high.left);
+            return rebalanceNode(high);
+        }
+        x.left = low;
+        x.right = high;
+        updateRank(x);
+        return x;
+    }
+
+    /**
+     * private static Node rebalanceNode(Node node)
+     * <p>
+     * Fixes node whose sons' ranks differ by at most two and returns the root of its subtree
+     * Complexity: O(1)
+     */
+    private static Node rebalanceNode(Node node) {
+        int balance = node.left.rank - node.right.rank;
+        if (balance > 1) {
+            if (node.left.right.rank > node.left.left.rank) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (node.right.left.rank > node.right.right.rank) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        updateRank(node);
+        return node;
+    }
+
+    /**
+     * public static class Node
+     *
+     * A node without parent and size, the rank is the height of the node (-1 for the virtual node).
+     */
+    public static class Node {
+
+        private int key;
+        private String value;
+        private Node left;
+        private Node right;
+        private byte rank;
+
+        private Node() {
+            key = -1;
+            value = null;
+            rank = -1;
+        }
+
+        public Node(int k, String value) {
+            this.key = k;
+            this.value = value;
+            this.left = virtualNode;
+            this.right = virtualNode;
+            this.rank = 0;
+        }
+
+        public int getKey() {
+            return key;
+        }
+        public String getValue() {
+            return value;
+        }
+        public Node getLeft() {
+            return left;
+        }
+        public Node getRight() {
+            return right;
+        }
+        public int getHeight() {
+            return rank;
+        }
+        public boolean isRealNode() {
+            return rank != -1;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+import java.util.Random;
+
+/**
+ * CompactionBenchmark
+ *
+ * Builds a tree by random inserts and deletes so its nodes are spread over the heap, and times
+ * an in-order walk (keysToArray) and searches of all keys in increasing order before and after compact,
+ * and after compact(true).
+ * usage: java CompactionBenchmark [n] [rounds]
+ */
+public class CompactionBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        AVLTree tree = new AVLTree();
+        while (tree.size() < n) {
+            // three inserts for every delete, so the nodes of neighbouring keys come from different times
+            int k = random.nextInt();
+            tree.insert(k, "");
+            if (random.nextInt(4) == 0) {
+                tree.delete(random.nextInt());
+                tree.delete(k);
+            }
+        }
+        System.out.println("n = " + tree.size() + ", rounds = " + rounds);
+        System.out.printf("%-20s %14s %14s %14s%n", "", "compact", "keysToArray", "sorted search");
+        report("churned", tree, rounds, 0);
+        long start = System.nanoTime();
+        tree.compact();
+        report("compact", tree, rounds, System.nanoTime() - start);
+        start = System.nanoTime();
+        tree.compact(true);
+        report("compact(true)", tree, rounds, System.nanoTime() - start);
+    }
+
+    private static void report(String name, AVLTree tree, int rounds, long compact) {
+        int[] keys = tree.keysToArray();
+        long found = 0;
+        long arrays = 0;
+        long ranges = 0;
+        for (int r = -1; r < rounds; r++) {
+            // round -1 warms up
+            long start = System.nanoTime();
+            found += tree.keysToArray().length;
+            long array = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int k : keys) {
+                found += (tree.search(k) != null) ? 1 : 0;
+            }
+            long range = System.nanoTime() - start;
+            if (r >= 0) {
+                arrays += array;
+                ranges += range;
+            }
+        }
+        System.out.printf("%-20s %11.2f ms %11.2f ms %11.2f ms (%d)%n", name, compact / 1e6,
+                arrays / 1e6 / rounds, ranges / 1e6 / rounds, found);
+    }
+}
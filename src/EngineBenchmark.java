@@ -0,0 +1,78 @@
+import java.util.Random;
+
+/**
+ * EngineBenchmark
+ *
+ * Compares the balancing engines of AVLTree: re-balancing operations
+ * (as returned by insert/delete) and throughput of a random insert phase
+ * followed by a random delete phase.
+ * usage: java EngineBenchmark [n] [rounds]
+ */
+public class EngineBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] keys = shuffledKeys(n, new Random(42));
+        int[] deleteOrder = shuffledKeys(n, new Random(7));
+
+        // warm up so every engine runs compiled code
+        for (AVLTree.Engine engine : AVLTree.Engine.values()) {
+            run(engine, keys, deleteOrder);
+        }
+
+        System.out.println("n = " + n + ", rounds = " + rounds);
+        System.out.printf("%-10s %14s %14s %12s %12s%n",
+                "engine", "insert ops/n", "delete ops/n", "insert ms", "delete ms");
+        for (AVLTree.Engine engine : AVLTree.Engine.values()) {
+            long[] total = new long[4];
+            for (int r = 0; r < rounds; r++) {
+                long[] result = run(engine, keys, deleteOrder);
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += result[i];
+                }
+            }
+            System.out.printf("%-10s %14.3f %14.3f %12.1f %12.1f%n", engine,
+                    (double) total[0] / ((long) n * rounds),
+                    (double) total[1] / ((long) n * rounds),
+                    total[2] / 1e6 / rounds,
+                    total[3] / 1e6 / rounds);
+        }
+    }
+
+    /**
+     * Returns {insert re-balances, delete re-balances, insert nanos, delete nanos}
+     */
+    private static long[] run(AVLTree.Engine engine, int[] keys, int[] deleteOrder) {
+        AVLTree tree = new AVLTree(engine);
+        long[] result = new long[4];
+        long start = System.nanoTime();
+        for (int k : keys) {
+            result[0] += tree.insert(k, "");
+        }
+        result[2] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int k : deleteOrder) {
+            result[1] += tree.delete(k);
+        }
+        result[3] = System.nanoTime() - start;
+        if (!tree.empty()) {
+            throw new IllegalStateException(engine + " tree is not empty after deleting every key");
+        }
+        return result;
+    }
+
+    private static int[] shuffledKeys(int n, Random random) {
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = temp;
+        }
+        return keys;
+    }
+}
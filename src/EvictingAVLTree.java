@@ -0,0 +1,231 @@
+import java.util.function.LongSupplier;
+
+/**
+ *
+ * EvictingAVLTree
+ *
+ * An AVLTree used as an ordered cache of bounded size. Once an insert goes past the capacity,
+ * items are evicted by the policy: the lowest key, or the oldest insert. With a time to live
+ * items also expire once they are older than it, they are never returned by search.
+ * The insertion order is kept in a second tree from insert stamps to keys, and a third from
+ * keys to stamps so a delete finds its stamp. Stamps come from the clock and are made strictly
+ * increasing, so the order of stamps is the order of inserts.
+ *
+ */
+
+public class EvictingAVLTree {
+
+    /**
+     * public enum Policy
+     * <p>
+     * LOWEST_KEY - evicts the item with the smallest key, through the cached min of the tree.
+     * INSERTION_AGE - evicts the item that was inserted first.
+     */
+    public enum Policy {
+        LOWEST_KEY, INSERTION_AGE
+    }
+
+    private final AVLTree tree;
+    private final int capacity;
+    private final Policy policy;
+    // the time to live in clock units, Long.MAX_VALUE for none
+    private final long ttl;
+    private final LongSupplier clock;
+    // stamp -> key and key -> stamp, null under LOWEST_KEY without a time to live
+    private LongAVLTree<Integer> ages;
+    private final LongAVLTree<Long> stamps;
+    private long lastStamp = Long.MIN_VALUE;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * public EvictingAVLTree(int capacity, Policy policy)
+     * <p>
+     * A tree of at most capacity items that evicts by policy, without a time to live
+     * precondition: capacity >= 1
+     */
+    public EvictingAVLTree(int capacity, Policy policy) {
+        this(capacity, policy, Long.MAX_VALUE, System::nanoTime);
+    }
+
+    /**
+     * public EvictingAVLTree(int capacity, Policy policy, long ttl, LongSupplier clock)
+     * <p>
+     * A tree of at most capacity items that evicts by policy, and where an item expires
+     * ttl clock units after its insert.
+     * precondition: capacity >= 1, ttl > 0, clock does not go back
+     */
+    public EvictingAVLTree(int capacity, Policy policy, long ttl, LongSupplier clock) {
+        this.tree = new AVLTree();
+        this.capacity = capacity;
+        this.policy = policy;
+        this.ttl = ttl;
+        this.clock = clock;
+        boolean timed = (policy == Policy.INSERTION_AGE) || (ttl != Long.MAX_VALUE);
+        this.ages = timed ? new LongAVLTree<>() : null;
+        this.stamps = timed ? new LongAVLTree<>() : null;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of key k, or null if it is not there or expired.
+     * Expired items are dropped first.
+     * Complexity: O(log n), plus O(log n) for every expired item
+     */
+    public String search(int k) {
+        expire();
+        return tree.search(k);
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * Inserts the item like AVLTree.insert, and then evicts while there are more than capacity items.
+     * Returns the number of items evicted, or -1 if key k is already there.
+     * Complexity: O(log n), plus O(log n) for every expired or evicted item
+     */
+    public int insert(int k, String i) {
+        expire();
+        if (tree.insert(k, i) < 0) {
+            return -1;
+        }
+        if (ages != null) {
+            long stamp = Math.max(clock.getAsLong(), lastStamp + 1);
+            lastStamp = stamp;
+            ages.insert(stamp, k);
+            stamps.insert(k, stamp);
+        }
+        int evicted = 0;
+        while (tree.size() > capacity) {
+            evictOne();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * Deletes the item with key k like AVLTree.delete
+     * Complexity: O(log n)
+     */
+    public int delete(int k) {
+        int result = tree.delete(k);
+        if ((result >= 0) && (stamps != null)) {
+            Long stamp = stamps.search(k);
+            stamps.delete(k);
+            ages.delete(stamp);
+        }
+        return result;
+    }
+
+    /**
+     * private void evictOne()
+     * <p>
+     * Removes the item the policy picks
+     * precondition: !tree.empty()
+     * Complexity: O(log n)
+     */
+    private void evictOne() {
+        evictions++;
+        if (policy == Policy.LOWEST_KEY) {
+            int k = tree.peekMinKey();
+            if (stamps != null) {
+                ages.delete(stamps.search(k));
+                stamps.delete(k);
+            }
+            tree.pollMin();
+            return;
+        }
+        int k = ages.min();
+        ages.delete(stamps.search(k));
+        stamps.delete(k);
+        tree.delete(k);
+    }
+
+    /**
+     * public int expire()
+     * <p>
+     * Drops the items older than the time to live. The stamp tree is split once after the last
+     * expired stamp, so the expired ages go in one piece and each expired key is deleted from the tree.
+     * Returns the number of expired items. Search and insert call it by themselves.
+     * Complexity: O(log n + E log n) for E expired items
+     */
+    public int expire() {
+        if ((ttl == Long.MAX_VALUE) || ages.empty()) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        if (now - stamps.search(ages.min()) < ttl) {
+            return 0;
+        }
+        // the expired stamp with the largest key, the stamps after it have not expired
+        LongAVLTree.Node<Integer> last = null;
+        LongAVLTree.Node<Integer> x = ages.getRoot();
+        while (x.isRealNode()) {
+            if (now - x.getKey() >= ttl) {
+                last = x;
+                x = x.getRight();
+            }
+            else {
+                x = x.getLeft();
+            }
+        }
+        int lastKey = last.getValue();
+        LongAVLTree<Integer>[] parts = ages.split(last.getKey());
+        ages = parts[1];
+        Integer[] expired = parts[0].infoToArray(Integer[]::new);
+        for (int k : expired) {
+            tree.delete(k);
+            stamps.delete(k);
+        }
+        tree.delete(lastKey);
+        stamps.delete(lastKey);
+        expirations += expired.length + 1;
+        return expired.length + 1;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of items that have not expired
+     * Complexity: O(1), plus O(log n) for every expired item
+     */
+    public int size() {
+        expire();
+        return tree.size();
+    }
+
+    /**
+     * public AVLTree getTree()
+     * <p>
+     * Returns the tree of the items for ordered reads (min, max, keysToArray). It may still hold
+     * items that expired since the last call to expire. It should not be changed directly.
+     * Complexity: O(1)
+     */
+    public AVLTree getTree() {
+        return tree;
+    }
+
+    /**
+     * public long evictions()
+     * <p>
+     * Returns the number of items the policy removed to make room for new ones so far
+     * Complexity: O(1)
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * public long expirations()
+     * <p>
+     * Returns the number of items that expire removed so far because they got too old
+     * Complexity: O(1)
+     */
+    public long expirations() {
+        return expirations;
+    }
+
+}
@@ -184,7 +184,7 @@ public class ExTester {
 
     public static void main(String[] args) {
         // initialize tests success array to false
-        final SuccessStatus[] success = new SuccessStatus[16];
+        final SuccessStatus[] success = new SuccessStatus[41];
 
         final Tests first_tester = new Tests();
         final ExTester second_tester = new ExTester();
@@ -386,6 +386,306 @@ public class ExTester {
                     }
                 }), 15);
 
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[16] = first_tester.engines() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[16] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 16);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[17] = first_tester.bPlusTree() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[17] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 17);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[18] = first_tester.smallTree() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[18] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 18);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[19] = first_tester.lazySizes() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[19] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 19);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[20] = first_tester.longAndObjKeyTrees() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[20] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 20);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[21] = first_tester.valueArena() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[21] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 21);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[22] = first_tester.compactTree() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[22] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 22);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[23] = first_tester.parallelArrays() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[23] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 23);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[24] = first_tester.joinChains() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[24] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 24);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[25] = first_tester.multiWaySplit() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[25] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 25);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[26] = first_tester.rangeDelete() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[26] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 26);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[27] = first_tester.rangeAggregate() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[27] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 27);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[28] = first_tester.intervalQueries() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[28] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 28);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[29] = first_tester.pollMinMax() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[29] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 29);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[30] = first_tester.batchedSearch() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[30] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 30);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[31] = first_tester.frozenSnapshot() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[31] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 31);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[32] = first_tester.keyBlocks() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[32] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 32);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[33] = first_tester.hashIndex() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[33] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 33);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[34] = first_tester.bloomFilter() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[34] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 34);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[35] = first_tester.hotKeyCache() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[35] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 35);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[36] = first_tester.evictingTree() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[36] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 36);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[37] = first_tester.lazyDelete() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[37] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 37);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[38] = first_tester.bufferedInsert() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[38] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 38);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[39] = first_tester.combiningTree() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[39] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 39);
+
+        runWithInterrupt(success,
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            success[40] = first_tester.compaction() ? SuccessStatus.PASS : SuccessStatus.FAIL;
+                        } catch (Throwable e) {
+                            success[40] = SuccessStatus.EXCEPTION;
+                        }
+                    }
+                }), 40);
+
         int final_score = TesterUtils.printStatus(success, second_tester.actualOperations, second_tester.avlOperations);
 		System.out.println("The final score is: " + final_score);
         System.exit(final_score);
@@ -409,4 +709,4 @@ public class ExTester {
             success[idx] = SuccessStatus.EXCEPTION;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * FrozenAVLTree
+ *
+ * An immutable snapshot of the items of an AVLTree, made by AVLTree.freeze().
+ * The keys are kept in one int array in Eytzinger (BFS) order: the sons of slot i are 2i and 2i + 1,
+ * so a search reads along one array and its next levels are close together. The descent has no
+ * branch on the key comparison, the comparison only picks the next slot.
+ *
+ */
+
+public class FrozenAVLTree {
+
+    private final int n;
+    // the keys in BFS order from slot 1, slot 0 is not used
+    private final int[] keys;
+    // the infos, in the slots of their keys
+    private final String[] info;
+    // the position of each slot in sorted order
+    private final int[] ranks;
+
+    /**
+     * FrozenAVLTree(int[] sortedKeys, String[] sortedInfo, int n)
+     * <p>
+     * Builds a snapshot of the first n items of the arrays.
+     * precondition: sortedKeys is sorted with distinct keys
+     * Complexity: O(n)
+     */
+    FrozenAVLTree(int[] sortedKeys, String[] sortedInfo, int n) {
+        this.n = n;
+        this.keys = new int[n + 1];
+        this.info = new String[n + 1];
+        this.ranks = new int[n + 1];
+        fill(sortedKeys, sortedInfo, 0, 1);
+    }
+
+    /**
+     * private int fill(int[] sortedKeys, String[] sortedInfo, int r, int slot)
+     * <p>
+     * Puts the items from rank r on in the subtree of slot, in order.
+     * Returns the next rank to place
+     * Complexity: O(size of the subtree), the recursion is O(log n) deep
+     */
+    private int fill(int[] sortedKeys, String[] sortedInfo, int r, int slot) {
+        if (slot > n) {
+            return r;
+        }
+        r = fill(sortedKeys, sortedInfo, r, 2 * slot);
+        keys[slot] = sortedKeys[r];
+        info[slot] = sortedInfo[r];
+        ranks[slot] = r;
+        return fill(sortedKeys, sortedInfo, r + 1, 2 * slot + 1);
+    }
+
+    /**
+     * private int ceilingSlot(int k)
+     * <p>
+     * Returns the slot of the smallest key that is at least k, or 0 if there is none.
+     * It is the last slot where the descent went left, found by dropping from i the trailing
+     * right steps and that left step.
+     * Complexity: O(log n)
+     */
+    private int ceilingSlot(int k) {
+        int i = 1;
+        while (i <= n) {
+            i = 2 * i + ((keys[i] < k) ? 1 : 0);
+        }
+        return i >>> (Integer.numberOfTrailingZeros(~i) + 1);
+    }
+
+    /**
+     * private int floorSlot(int k)
+     * <p>
+     * Returns the slot of the largest key that is at most k, or 0 if there is none.
+     * It is the last slot where the descent went right.
+     * Complexity: O(log n)
+     */
+    private int floorSlot(int k) {
+        int i = 1;
+        while (i <= n) {
+            i = 2 * i + ((keys[i] <= k) ? 1 : 0);
+        }
+        return i >>> (Integer.numberOfTrailingZeros(i) + 1);
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of items in the snapshot.
+     * Complexity: O(1)
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of the item with key k, or null if there is none.
+     * Complexity: O(log n)
+     */
+    public String search(int k) {
+        int slot = ceilingSlot(k);
+        return ((slot != 0) && (keys[slot] == k)) ? info[slot] : null;
+    }
+
+    /**
+     * public int rank(int k)
+     * <p>
+     * Returns the number of keys smaller than k.
+     * Complexity: O(log n)
+     */
+    public int rank(int k) {
+        int slot = ceilingSlot(k);
+        return (slot == 0) ? n : ranks[slot];
+    }
+
+    /**
+     * public int floorKey(int k)
+     * <p>
+     * Returns the largest key that is at most k.
+     * Throws NoSuchElementException if all keys are bigger than k.
+     * Complexity: O(log n)
+     */
+    public int floorKey(int k) {
+        int slot = floorSlot(k);
+        if (slot == 0) {
+            throw new NoSuchElementException("no key <= " + k);
+        }
+        return keys[slot];
+    }
+
+    /**
+     * public int ceilingKey(int k)
+     * <p>
+     * Returns the smallest key that is at least k.
+     * Throws NoSuchElementException if all keys are smaller than k.
+     * Complexity: O(log n)
+     */
+    public int ceilingKey(int k) {
+        int slot = ceilingSlot(k);
+        if (slot == 0) {
+            throw new NoSuchElementException("no key >= " + k);
+        }
+        return keys[slot];
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array of the keys.
+     * Complexity: O(n)
+     */
+    public int[] keysToArray() {
+        int[] sorted = new int[n];
+        for (int slot = 1; slot <= n; slot++) {
+            sorted[ranks[slot]] = keys[slot];
+        }
+        return sorted;
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns the infos, sorted by their keys.
+     * Complexity: O(n)
+     */
+    public String[] infoToArray() {
+        String[] sorted = new String[n];
+        for (int slot = 1; slot <= n; slot++) {
+            sorted[ranks[slot]] = info[slot];
+        }
+        return sorted;
+    }
+
+}
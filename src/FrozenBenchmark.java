@@ -0,0 +1,61 @@
+import java.util.Random;
+
+/**
+ * FrozenBenchmark
+ *
+ * Compares search on a FrozenAVLTree snapshot with search on the live AVLTree it was made from,
+ * half of the keys are in the tree.
+ * usage: java FrozenBenchmark [n] [rounds]
+ */
+public class FrozenBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < n; i++) {
+            tree.insert(random.nextInt(), "");
+        }
+        long start = System.nanoTime();
+        FrozenAVLTree frozen = tree.freeze();
+        long freeze = System.nanoTime() - start;
+        int[] keys = frozen.keysToArray();
+        int[] queries = new int[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = (i % 2 == 0) ? keys[random.nextInt(keys.length)] : random.nextInt();
+        }
+
+        long[] total = new long[3];
+        long found = 0;
+        for (int r = -1; r < rounds; r++) {
+            // round -1 warms up all versions
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += (tree.search(q) != null) ? 1 : 0;
+            }
+            long live = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += (frozen.search(q) != null) ? 1 : 0;
+            }
+            long snapshot = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += frozen.rank(q);
+            }
+            long rank = System.nanoTime() - start;
+            if (r >= 0) {
+                total[0] += live;
+                total[1] += snapshot;
+                total[2] += rank;
+            }
+        }
+
+        System.out.println("n = " + tree.size() + ", rounds = " + rounds + ", freeze = "
+                + String.format("%.2f", freeze / 1e6) + " ms (" + found + ")");
+        System.out.printf("%-16s %12.1f M/s%n", "live search", (double) n * rounds / total[0] * 1e3);
+        System.out.printf("%-16s %12.1f M/s%n", "frozen search", (double) n * rounds / total[1] * 1e3);
+        System.out.printf("%-16s %12.1f M/s%n", "frozen rank", (double) n * rounds / total[2] * 1e3);
+    }
+}
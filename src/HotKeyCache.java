@@ -0,0 +1,482 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * HotKeyCache
+ *
+ * A bounded cache of key -> info in front of AVLTree.search, for reads that keep hitting the same keys.
+ * A hit reads an open addressing table of immutable entries without a lock, so any number of threads
+ * can search at once. A miss, and every change to the tree or the cache, runs under one lock:
+ * an entry is only put in the table under the lock the writers hold, so a write can never be
+ * followed by a stale entry for its key.
+ * Admission is TinyLFU: a key that missed replaces the CLOCK victim only if a count-min sketch
+ * of recent accesses says it is used more often, so a scan of cold keys does not flush the hot ones.
+ * The tree should be changed only through the cache.
+ *
+ */
+
+public class HotKeyCache {
+
+    private final AVLTree tree;
+    private final int capacity;
+    private final Object lock = new Object();
+    // the cached entries by key, linear probing, at most half full. null is an empty slot
+    private final AtomicReferenceArray<Entry> table;
+    private final int shift;
+    // the CLOCK ring of the cached entries, changed under lock only
+    private final Entry[] ring;
+    private int hand;
+    private int count;
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // changed under lock only
+    private long rejections;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * public HotKeyCache(AVLTree tree, int capacity)
+     * <p>
+     * A cache of up to capacity items of tree
+     * precondition: capacity >= 1
+     */
+    public HotKeyCache(AVLTree tree, int capacity) {
+        this(tree, capacity, new FrequencySketch(capacity));
+    }
+
+    private HotKeyCache(AVLTree tree, int capacity, FrequencySketch sketch) {
+        this.tree = tree;
+        this.capacity = capacity;
+        int tableSize = Integer.highestOneBit(Math.max(2 * capacity - 1, 1)) << 1;
+        this.table = new AtomicReferenceArray<>(tableSize);
+        this.shift = Integer.numberOfLeadingZeros(tableSize) + 1;
+        this.ring = new Entry[capacity];
+        this.sketch = sketch;
+    }
+
+    private int slot(int k) {
+        return (k * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * Returns the info of key k like AVLTree.search, from the cache if it is there
+     * Complexity: O(1) expected for a hit, O(log n) for a miss
+     */
+    public String search(int k) {
+        Entry e = find(k);
+        if (e != null) {
+            e.referenced = true;
+            if (sketch.increment(k)) {
+                synchronized (lock) {
+                    sketch.ageIfDue();
+                }
+            }
+            hits.increment();
+            return e.value;
+        }
+        misses.increment();
+        synchronized (lock) {
+            sketch.increment(k);
+            sketch.ageIfDue();
+            // another thread that missed on k may have cached it while this one waited for the lock
+            e = find(k);
+            if (e != null) {
+                e.referenced = true;
+                return e.value;
+            }
+            String info = tree.search(k);
+            if (info != null) {
+                admit(k, info);
+            }
+            return info;
+        }
+    }
+
+    /**
+     * private Entry find(int k)
+     * <p>
+     * Returns the entry of k in the table, or null if k is not cached. Needs no lock
+     * Complexity: O(1) expected
+     */
+    private Entry find(int k) {
+        int mask = table.length() - 1;
+        for (int i = slot(k); ; i = (i + 1) & mask) {
+            Entry e = table.get(i);
+            if (e == null || e.key == k) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * AVLTree.insert, and drops k from the cache
+     * Complexity: O(log n)
+     */
+    public int insert(int k, String i) {
+        synchronized (lock) {
+            invalidateLocked(k);
+            return tree.insert(k, i);
+        }
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * AVLTree.delete, and drops k from the cache
+     * Complexity: O(log n)
+     */
+    public int delete(int k) {
+        synchronized (lock) {
+            invalidateLocked(k);
+            return tree.delete(k);
+        }
+    }
+
+    /**
+     * public HotKeyCache[] split(int x)
+     * <p>
+     * AVLTree.split on the tree of the cache. Returns caches over the two trees, each with the cached
+     * entries of its keys and a copy of the sketch; x is dropped. This cache should not be used afterwards.
+     * precondition: search(x) != null
+     * Complexity: O(log n + capacity)
+     */
+    public HotKeyCache[] split(int x) {
+        synchronized (lock) {
+            AVLTree[] parts = tree.split(x);
+            HotKeyCache[] result = {new HotKeyCache(parts[0], capacity, sketch.copy()),
+                    new HotKeyCache(parts[1], capacity, sketch.copy())};
+            for (int i = 0; i < count; i++) {
+                Entry e = ring[i];
+                if (e.key != x) {
+                    result[(e.key < x) ? 0 : 1].add(new Entry(e.key, e.value));
+                }
+            }
+            invalidations++;
+            clearLocked();
+            return result;
+        }
+    }
+
+    /**
+     * public int join(AVLTree.IAVLNode x, HotKeyCache t)
+     * <p>
+     * AVLTree.join of the trees of the caches. The cached entries of t move over while there is room,
+     * x is dropped from the cache. t should not be used afterwards.
+     * Locks this cache and then t, two caches must not be joined into each other at the same time.
+     * Complexity: O(log n + capacity)
+     */
+    public int join(AVLTree.IAVLNode x, HotKeyCache t) {
+        synchronized (lock) {
+            synchronized (t.lock) {
+                int result = tree.join(x, t.tree);
+                invalidateLocked(x.getKey());
+                for (int i = 0; (i < t.count) && (count < capacity); i++) {
+                    add(new Entry(t.ring[i].key, t.ring[i].value));
+                }
+                t.clearLocked();
+                return result;
+            }
+        }
+    }
+
+    /**
+     * public void invalidate(int k)
+     * <p>
+     * Drops k from the cache
+     * Complexity: O(1) expected
+     */
+    public void invalidate(int k) {
+        synchronized (lock) {
+            invalidateLocked(k);
+        }
+    }
+
+    /**
+     * public void invalidateAll()
+     * <p>
+     * Empties the cache
+     * Complexity: O(capacity)
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            invalidations += count;
+            clearLocked();
+        }
+    }
+
+    /**
+     * private void admit(int k, String info)
+     * <p>
+     * Caches k after a miss: into a free place, or instead of the CLOCK victim if the sketch counts k
+     * as more frequent than the victim. precondition: holds lock, k is not cached
+     * Complexity: O(1) amortized
+     */
+    private void admit(int k, String info) {
+        if (count < capacity) {
+            add(new Entry(k, info));
+            return;
+        }
+        // the hand clears referenced bits until it finds an entry that was not used since its last turn,
+        // at most two rounds in case hits keep setting them
+        for (int steps = 0; ring[hand].referenced && (steps < 2 * capacity); steps++) {
+            ring[hand].referenced = false;
+            hand = (hand + 1) % capacity;
+        }
+        Entry victim = ring[hand];
+        if (sketch.frequency(k) <= sketch.frequency(victim.key)) {
+            rejections++;
+            return;
+        }
+        evictions++;
+        removeFromTable(victim.key);
+        Entry e = new Entry(k, info);
+        e.ringIndex = hand;
+        ring[hand] = e;
+        putInTable(e);
+        hand = (hand + 1) % capacity;
+    }
+
+    private void add(Entry e) {
+        e.ringIndex = count;
+        ring[count++] = e;
+        putInTable(e);
+    }
+
+    private void invalidateLocked(int k) {
+        Entry e = removeFromTable(k);
+        if (e == null) {
+            return;
+        }
+        invalidations++;
+        // the last entry of the ring fills the hole
+        Entry last = ring[--count];
+        ring[e.ringIndex] = last;
+        last.ringIndex = e.ringIndex;
+        ring[count] = null;
+        if (hand >= count) {
+            hand = 0;
+        }
+    }
+
+    private void clearLocked() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        for (int i = 0; i < count; i++) {
+            ring[i] = null;
+        }
+        count = 0;
+        hand = 0;
+    }
+
+    private void putInTable(Entry e) {
+        int mask = table.length() - 1;
+        int i = slot(e.key);
+        while (table.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, e);
+    }
+
+    /**
+     * private Entry removeFromTable(int k)
+     * <p>
+     * Removes k from the table and moves back the later entries of its probe run.
+     * A reader that misses an entry while it moves goes to the tree, under lock.
+     * Returns the removed entry, or null if k was not there
+     * Complexity: O(1) expected
+     */
+    private Entry removeFromTable(int k) {
+        int mask = table.length() - 1;
+        int i = slot(k);
+        Entry removed;
+        while (true) {
+            removed = table.get(i);
+            if (removed == null) {
+                return null;
+            }
+            if (removed.key == k) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        for (int j = (i + 1) & mask; table.get(j) != null; j = (j + 1) & mask) {
+            Entry e = table.get(j);
+            int home = slot(e.key);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table.set(hole, e);
+                hole = j;
+            }
+        }
+        table.set(hole, null);
+        return removed;
+    }
+
+    /**
+     * public AVLTree getTree()
+     * <p>
+     * Returns the tree under the cache, for reading only
+     * Complexity: O(1)
+     */
+    public AVLTree getTree() {
+        return tree;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * public double hitRate()
+     * <p>
+     * Returns hits / (hits + misses), 0 before any search
+     * Complexity: O(number of threads)
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long all = h + misses.sum();
+        return (all == 0) ? 0 : (double) h / all;
+    }
+
+    public long rejections() {
+        synchronized (lock) {
+            return rejections;
+        }
+    }
+
+    public long evictions() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    public long invalidations() {
+        synchronized (lock) {
+            return invalidations;
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    /**
+     * private static class Entry
+     *
+     * A cached item. key and value never change, so a reader that finds the entry sees both.
+     */
+    private static class Entry {
+        private final int key;
+        private final String value;
+        // the CLOCK bit, set by hits without the lock
+        private volatile boolean referenced;
+        // the place in the ring, under lock
+        private int ringIndex;
+
+        Entry(int key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * private static class FrequencySketch
+     *
+     * A count-min sketch of 4 rows of counters up to 15 for the admission policy.
+     * After 10 * capacity increments every counter is halved, so old popularity fades.
+     * Hits increment it without the lock, a lost update only makes a count a bit low.
+     * The halving runs under the lock in ageIfDue. A hit that races it may keep one counter
+     * unhalved or write back a stale number of additions, which only moves the next halving;
+     * the counts stay between 0 and 15 and only steer admission, never what search returns.
+     */
+    private static class FrequencySketch {
+
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private final byte[] counts;
+        private final int shift;
+        private final int width;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            width = Integer.highestOneBit(Math.max(4 * capacity - 1, 8)) << 1;
+            shift = Integer.numberOfLeadingZeros(width) + 1;
+            counts = new byte[ROWS * width];
+            sampleSize = 10 * Math.max(capacity, 1);
+        }
+
+        private FrequencySketch(FrequencySketch other) {
+            width = other.width;
+            shift = other.shift;
+            counts = other.counts.clone();
+            sampleSize = other.sampleSize;
+            additions = other.additions;
+        }
+
+        FrequencySketch copy() {
+            return new FrequencySketch(this);
+        }
+
+        private int index(int k, int row) {
+            int h = k * SEEDS[row];
+            return row * width + ((h ^ (h >>> 15)) * 0x2C1B3C6D >>> shift);
+        }
+
+        /**
+         * boolean increment(int k)
+         * <p>
+         * Counts an access to k. Returns true if the counters are due to be halved by ageIfDue
+         * Complexity: O(1)
+         */
+        boolean increment(int k) {
+            for (int row = 0; row < ROWS; row++) {
+                int i = index(k, row);
+                if (counts[i] < MAX_COUNT) {
+                    counts[i]++;
+                }
+            }
+            return ++additions >= sampleSize;
+        }
+
+        /**
+         * void ageIfDue()
+         * <p>
+         * Halves every counter once sampleSize increments were counted since the last time.
+         * precondition: holds the lock of the cache
+         * Complexity: O(width), O(1) if it is not due
+         */
+        void ageIfDue() {
+            if (additions < sampleSize) {
+                return;
+            }
+            additions = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 1;
+            }
+        }
+
+        int frequency(int k) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                min = Math.min(min, counts[index(k, row)]);
+            }
+            return min;
+        }
+    }
+
+}
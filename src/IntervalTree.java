@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * IntervalTree
+ *
+ * A rank balanced tree of distinct closed intervals [start, end] with info, ordered by start and then end.
+ * Every node also keeps the biggest end in its subtree. It is recomputed from the sons with the size
+ * (the tree is augmented, see RankBalancedTree.isAugmented), so the rotations and the rebalancing
+ * of every engine keep it right.
+ *
+ */
+
+public class IntervalTree extends RankBalancedTree<IntervalTree.Node> {
+
+    private static final Node virtualNode = new Node();
+
+    public IntervalTree() {
+        this(AVLTree.Engine.AVL);
+    }
+
+    /**
+     * public IntervalTree(AVLTree.Engine engine)
+     * <p>
+     * Creates an empty tree that is kept balanced by the rules of engine.
+     */
+    public IntervalTree(AVLTree.Engine engine) {
+        super(engine, virtualNode);
+    }
+
+    protected boolean lessThan(Node a, Node b) {
+        return (a.start < b.start) || ((a.start == b.start) && (a.end < b.end));
+    }
+
+    protected RankBalancedTree<Node> newLinkedTree() {
+        return new IntervalTree(engine);
+    }
+
+    protected boolean isAugmented() {
+        return true;
+    }
+
+    /**
+     * public void setLazySizes(boolean lazySizes)
+     * <p>
+     * The lazy sizes mode would leave the biggest ends stale after insert and delete,
+     * and overlapping and stabbing prune by them, so the tree does not allow it.
+     * Complexity: O(1)
+     */
+    public void setLazySizes(boolean lazySizes) {
+        if (lazySizes) {
+            throw new IllegalStateException("the lazy sizes mode does not work with the biggest ends of an interval tree");
+        }
+        super.setLazySizes(false);
+    }
+
+    /**
+     * public static IntervalTree fromSorted(int[] starts, int[] ends, String[] info, AVLTree.Engine engine)
+     * <p>
+     * Builds a balanced tree of the intervals [starts[i], ends[i]] in one pass.
+     * precondition: the intervals are distinct and sorted by start and then end, starts[i] <= ends[i]
+     * Complexity: O(n)
+     */
+    public static IntervalTree fromSorted(int[] starts, int[] ends, String[] info, AVLTree.Engine engine) {
+        IntervalTree tree = new IntervalTree(engine);
+        if (starts.length > 0) {
+            tree.setBuiltRoot(tree.buildBalanced(starts, ends, info, 0, starts.length));
+        }
+        return tree;
+    }
+
+    private Node buildBalanced(int[] starts, int[] ends, String[] info, int from, int to) {
+        if (from >= to) {
+            return virtualNode;
+        }
+        int mid = (from + to) >>> 1;
+        Node node = new Node(starts[mid], ends[mid], info[mid]);
+        linkBuiltNode(node, buildBalanced(starts, ends, info, from, mid), buildBalanced(starts, ends, info, mid + 1, to));
+        return node;
+    }
+
+    /**
+     * public String search(int start, int end)
+     * <p>
+     * Returns the info of the interval [start, end] if it is in the tree, otherwise null.
+     * complexity: O(log n)
+     */
+    public String search(int start, int end) {
+        if (empty()) {
+            return null;
+        }
+        Node x = treePosition(start, end);
+        return ((x.start == start) && (x.end == end)) ? x.value : null;
+    }
+
+    /**
+     * public int insert(int start, int end, String i)
+     * <p>
+     * Inserts the interval [start, end] with info i.
+     * Returns the number of re-balancing operations, or -1 if the interval is already in the tree.
+     * precondition: start <= end
+     * Complexity: O(log n)
+     */
+    public int insert(int start, int end, String i) {
+        Node parent = null;
+        if (!empty()) {
+            parent = treePosition(start, end);
+            if ((parent.start == start) && (parent.end == end))
+                return -1;
+        }
+        return insertNode(parent, new Node(start, end, i));
+    }
+
+    /**
+     * public int delete(int start, int end)
+     * <p>
+     * Deletes the interval [start, end], if it is there.
+     * Returns the number of re-balancing operations, or -1 if the interval was not found.
+     * Complexity: O(log n)
+     */
+    public int delete(int start, int end) {
+        if (empty()) {
+            return -1;
+        }
+        Node x = treePosition(start, end);
+        if ((x.start != start) || (x.end != end)) {
+            return -1;
+        }
+        return removeNode(x);
+    }
+
+    /**
+     * precondition: !empty()
+     * return the node of [start, end] if exists
+     * else returns the node that should be its parent
+     * Complexity: O(log n)
+     */
+    private Node treePosition(int start, int end) {
+        Node x = root;
+        Node y = null;
+        while (x.isRealNode()) {
+            y = x;
+            if ((start == x.start) && (end == x.end)) {
+                return x;
+            }
+            x = ((start < x.start) || ((start == x.start) && (end < x.end))) ? x.left : x.right;
+        }
+        return y;
+    }
+
+    /**
+     * public List<Node> overlapping(int a, int b)
+     * <p>
+     * Returns the intervals that overlap [a, b] (start <= b and end >= a), sorted.
+     * An in-order walk with an explicit stack that skips subtrees whose biggest end is below a,
+     * and stops at the first start above b.
+     * Complexity: O(min(n, (k + 1) log n)) for k results
+     */
+    public List<Node> overlapping(int a, int b) {
+        List<Node> result = new ArrayList<>();
+        if (a > b || empty()) {
+            return result;
+        }
+        Node[] stack = new Node[2 * root.height + 4];
+        int depth = 0;
+        Node x = root;
+        while (true) {
+            while (x.isRealNode() && (x.maxEnd >= a)) {
+                stack[depth++] = x;
+                x = x.left;
+            }
+            if (depth == 0) {
+                return result;
+            }
+            x = stack[--depth];
+            if (x.start > b) {
+                return result;
+            }
+            if (x.end >= a) {
+                result.add(x);
+            }
+            x = x.right;
+        }
+    }
+
+    /**
+     * public List<Node> stabbing(int point)
+     * <p>
+     * Returns the intervals that contain point, sorted.
+     * Complexity: O(min(n, (k + 1) log n)) for k results
+     */
+    public List<Node> stabbing(int point) {
+        return overlapping(point, point);
+    }
+
+    /**
+     * public Node getRoot()
+     *
+     * Returns the root node, or a virtual node if the tree is empty
+     * Complexity: O(1)
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * public static class Node
+     *
+     * A node of IntervalTree, the height field is the rank of the node.
+     */
+    public static class Node implements RankBalancedTree.RankNode<Node> {
+
+        private static final int virtualNodeHeight = -1;
+        private int start;
+        private int end;
+        private String value;
+        // the biggest end in the subtree
+        private int maxEnd;
+        private Node left;
+        private Node right;
+        private Node parent;
+        private int height;
+        private int size;
+
+        private Node() {
+            height = virtualNodeHeight;
+            maxEnd = Integer.MIN_VALUE;
+        }
+
+        public Node(int start, int end, String value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+            this.size = 1;
+            this.height = 0;
+        }
+
+        public int getStart() {
+            return start;
+        }
+        public int getEnd() {
+            return end;
+        }
+        public String getValue() {
+            return value;
+        }
+        public int getMaxEnd() {
+            return maxEnd;
+        }
+        public void setLeft(Node node) {
+            left = node;
+        }
+        public Node getLeft() {
+            return left;
+        }
+        public void setRight(Node node) {
+            right = node;
+        }
+        public Node getRight() {
+            return right;
+        }
+        public void setParent(Node node) {
+            parent = node;
+        }
+        public Node getParent() {
+            return parent;
+        }
+        public boolean isRealNode() {
+            return (height != virtualNodeHeight);
+        }
+        public void setHeight(int height) {
+            this.height = height;
+        }
+        public int getHeight() {
+            return height;
+        }
+        public void setSize(int k) {
+            size = k;
+        }
+        public int getSize() {
+            return size;
+        }
+        public void updateSizeByChildren() {
+            size = 1 + right.size + left.size;
+            maxEnd = Math.max(end, Math.max(left.maxEnd, right.maxEnd));
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ * KeyBlocks
+ *
+ * A read only export of sorted keys in blocks of BLOCK keys, for rank, lookup and range counts
+ * on large frozen key sets. Above the keys are levels of the first keys of the blocks below,
+ * in blocks as well, up to a single block: a search compares the probe with one whole block
+ * on every level, a static B-tree with BLOCK keys per node.
+ * The block compare uses the Vector API (vector/VectorBlockScan.java, built and run with
+ * --add-modules jdk.incubator.vector) when that class can be loaded, and a scalar loop otherwise.
+ *
+ */
+
+public class KeyBlocks {
+
+    public static final int BLOCK = 16;
+    private static final BlockScan VECTOR_SCAN = loadVectorScan();
+    private static final BlockScan SCALAR_SCAN = new ScalarScan();
+
+    private final int n;
+    // levels[0] is the keys, levels[i + 1] has the first key of every block of levels[i],
+    // the last level is one block. every level is padded with Integer.MAX_VALUE to whole blocks
+    private final int[][] levels;
+    private final BlockScan scan;
+
+    /**
+     * public KeyBlocks(int[] sortedKeys)
+     * <p>
+     * Copies sortedKeys into blocks, with the Vector API if it is available.
+     * precondition: sortedKeys is sorted with distinct keys
+     * Complexity: O(n)
+     */
+    public KeyBlocks(int[] sortedKeys) {
+        this(sortedKeys, true);
+    }
+
+    /**
+     * public KeyBlocks(int[] sortedKeys, boolean useVector)
+     * <p>
+     * Copies sortedKeys into blocks, the block compares use the Vector API only if useVector and it is available.
+     * precondition: sortedKeys is sorted with distinct keys
+     * Complexity: O(n)
+     */
+    public KeyBlocks(int[] sortedKeys, boolean useVector) {
+        n = sortedKeys.length;
+        int depth = 1;
+        for (int count = n; count > BLOCK; count = (count + BLOCK - 1) / BLOCK) {
+            depth++;
+        }
+        levels = new int[depth][];
+        levels[0] = padded(sortedKeys, n);
+        for (int i = 1; i < depth; i++) {
+            int[] below = levels[i - 1];
+            int[] firsts = new int[below.length / BLOCK];
+            for (int b = 0; b < firsts.length; b++) {
+                firsts[b] = below[b * BLOCK];
+            }
+            levels[i] = padded(firsts, firsts.length);
+        }
+        scan = (useVector && (VECTOR_SCAN != null)) ? VECTOR_SCAN : SCALAR_SCAN;
+    }
+
+    /**
+     * private static int[] padded(int[] keys, int count)
+     * <p>
+     * Returns the first count keys in an array of whole blocks (at least one), padded with Integer.MAX_VALUE
+     * Complexity: O(count)
+     */
+    private static int[] padded(int[] keys, int count) {
+        int[] result = new int[Math.max(1, (count + BLOCK - 1) / BLOCK) * BLOCK];
+        System.arraycopy(keys, 0, result, 0, count);
+        for (int i = count; i < result.length; i++) {
+            result[i] = Integer.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * private static BlockScan loadVectorScan()
+     * <p>
+     * Returns the Vector API block compare, or null if it was not built or the incubator module is not there
+     * Complexity: O(1)
+     */
+    private static BlockScan loadVectorScan() {
+        try {
+            return (BlockScan) Class.forName("VectorBlockScan").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * public boolean isVectorized()
+     * <p>
+     * Returns true if the block compares use the Vector API
+     * Complexity: O(1)
+     */
+    public boolean isVectorized() {
+        return scan != SCALAR_SCAN;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of keys.
+     * Complexity: O(1)
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * public int rank(int k)
+     * <p>
+     * Returns the number of keys smaller than k.
+     * Complexity: O(log n / log BLOCK) block compares
+     */
+    public int rank(int k) {
+        int from = 0;
+        for (int i = levels.length - 1; i > 0; i--) {
+            // the last block below whose first key is smaller than k, the blocks after it have no key smaller than k
+            int count = scan.countLess(levels[i], from, k);
+            if (count == 0) {
+                return 0;
+            }
+            from = (from + count - 1) * BLOCK;
+        }
+        return from + scan.countLess(levels[0], from, k);
+    }
+
+    /**
+     * public boolean contains(int k)
+     * <p>
+     * Returns true if k is one of the keys.
+     * Complexity: O(log n / log BLOCK) block compares
+     */
+    public boolean contains(int k) {
+        int r = rank(k);
+        return (r < n) && (levels[0][r] == k);
+    }
+
+    /**
+     * public int countRange(int lo, int hi)
+     * <p>
+     * Returns the number of keys in [lo, hi], 0 if lo > hi.
+     * Complexity: O(log n / log BLOCK) block compares
+     */
+    public int countRange(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        int end = (hi == Integer.MAX_VALUE) ? n : rank(hi + 1);
+        return end - rank(lo);
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array of the keys.
+     * Complexity: O(n)
+     */
+    public int[] keysToArray() {
+        int[] sorted = new int[n];
+        System.arraycopy(levels[0], 0, sorted, 0, n);
+        return sorted;
+    }
+
+    /**
+     * interface BlockScan
+     *
+     * Compares a probe with one block of keys.
+     */
+    interface BlockScan {
+        // Returns the number of keys[from .. from + BLOCK - 1] that are smaller than k.
+        int countLess(int[] keys, int from, int k);
+    }
+
+    /**
+     * private static class ScalarScan
+     *
+     * The block compare without the Vector API, the comparisons add up without branches.
+     */
+    private static class ScalarScan implements BlockScan {
+        public int countLess(int[] keys, int from, int k) {
+            int count = 0;
+            for (int i = from; i < from + BLOCK; i++) {
+                count += (keys[i] < k) ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+}
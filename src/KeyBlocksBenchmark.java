@@ -0,0 +1,74 @@
+import java.util.Random;
+
+/**
+ * KeyBlocksBenchmark
+ *
+ * Compares rank and range counts on KeyBlocks with and without the Vector API,
+ * and rank on a FrozenAVLTree of the same keys.
+ * usage: java [--add-modules jdk.incubator.vector] KeyBlocksBenchmark [n] [rounds]
+ */
+public class KeyBlocksBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < n; i++) {
+            tree.insert(random.nextInt(), "");
+        }
+        int[] keys = tree.keysToArray();
+        KeyBlocks vector = new KeyBlocks(keys, true);
+        KeyBlocks scalar = new KeyBlocks(keys, false);
+        FrozenAVLTree frozen = tree.freeze();
+        int[] queries = new int[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = (i % 2 == 0) ? keys[random.nextInt(keys.length)] : random.nextInt();
+        }
+
+        long[] total = new long[5];
+        long found = 0;
+        for (int r = -1; r < rounds; r++) {
+            // round -1 warms up all versions
+            long start = System.nanoTime();
+            for (int q : queries) {
+                found += vector.rank(q);
+            }
+            long vectorRank = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += scalar.rank(q);
+            }
+            long scalarRank = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += frozen.rank(q);
+            }
+            long frozenRank = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += vector.countRange(q, q + (1 << 20));
+            }
+            long vectorRange = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += scalar.countRange(q, q + (1 << 20));
+            }
+            long scalarRange = System.nanoTime() - start;
+            if (r >= 0) {
+                total[0] += vectorRank;
+                total[1] += scalarRank;
+                total[2] += frozenRank;
+                total[3] += vectorRange;
+                total[4] += scalarRange;
+            }
+        }
+
+        System.out.println("n = " + keys.length + ", rounds = " + rounds + ", vector api = "
+                + vector.isVectorized() + " (" + found + ")");
+        String[] names = {"blocks rank", "scalar rank", "frozen rank", "blocks range", "scalar range"};
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("%-14s %12.1f M/s%n", names[i], (double) n * rounds / total[i] * 1e3);
+        }
+    }
+}
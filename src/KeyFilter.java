@@ -0,0 +1,228 @@
+/**
+ *
+ * KeyFilter
+ *
+ * A split block Bloom filter over int keys, for answering "not in the tree" without touching nodes.
+ * A key hashes to one block of 8 ints and sets one bit in each of them, so a lookup reads a single
+ * 32 byte block. Bits cannot be taken out, a removed key only counts towards a rebuild:
+ * the owner rebuilds the filter from its keys once needsRebuild() says so.
+ *
+ */
+
+public class KeyFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int BLOCK_WORDS = 8;
+    // odd multipliers picking a bit in each word of the block
+    private static final int[] SALT = {0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+    private final int[] words;
+    private final int blocks;
+    // the number of keys the filter was sized for
+    private final int capacity;
+    private int added;
+    private int removed;
+    // the filter no longer covers the owner's keys (after split or join), it must be rebuilt before use
+    private final boolean stale;
+    private long negatives;
+    private long falsePositives;
+    private int rebuilds;
+
+    /**
+     * public KeyFilter(int capacity)
+     * <p>
+     * An empty filter with BITS_PER_KEY bits for each of capacity keys
+     * Complexity: O(capacity)
+     */
+    public KeyFilter(int capacity) {
+        this(capacity, false);
+    }
+
+    private KeyFilter(int capacity, boolean stale) {
+        this.capacity = Math.max(capacity, 1);
+        this.blocks = (int) Math.max(1, ((long) this.capacity * BITS_PER_KEY + 32 * BLOCK_WORDS - 1) / (32 * BLOCK_WORDS));
+        this.words = new int[stale ? 0 : blocks * BLOCK_WORDS];
+        this.stale = stale;
+    }
+
+    /**
+     * public static KeyFilter staleFilter()
+     * <p>
+     * Returns a filter that holds nothing and asks to be rebuilt, for trees whose keys came from elsewhere
+     * Complexity: O(1)
+     */
+    public static KeyFilter staleFilter() {
+        return new KeyFilter(1, true);
+    }
+
+    /**
+     * public KeyFilter rebuilt(int[] keys)
+     * <p>
+     * Returns a new filter sized for and holding keys, which keeps the counters of this filter
+     * Complexity: O(keys.length)
+     */
+    public KeyFilter rebuilt(int[] keys) {
+        KeyFilter filter = new KeyFilter(keys.length);
+        for (int k : keys) {
+            filter.add(k);
+        }
+        filter.negatives = negatives;
+        filter.falsePositives = falsePositives;
+        filter.rebuilds = rebuilds + 1;
+        return filter;
+    }
+
+    private static long hash(int k) {
+        // the 64 bit finalizer of MurmurHash3
+        long h = k * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private int blockOf(long h) {
+        return (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_WORDS;
+    }
+
+    /**
+     * public void add(int k)
+     * <p>
+     * Adds key k
+     * Complexity: O(1)
+     */
+    public void add(int k) {
+        if (stale) {
+            return;
+        }
+        long h = hash(k);
+        int block = blockOf(h);
+        int low = (int) h;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            words[block + i] |= 1 << ((low * SALT[i]) >>> 27);
+        }
+        added++;
+    }
+
+    /**
+     * public void remove(int k)
+     * <p>
+     * Notes that key k left the owner, its bits stay until the filter is rebuilt
+     * Complexity: O(1)
+     */
+    public void remove(int k) {
+        removed++;
+    }
+
+    /**
+     * public boolean mightContain(int k)
+     * <p>
+     * Returns false if k was surely not added, true if it might have been
+     * precondition: !needsRebuild()
+     * Complexity: O(1)
+     */
+    public boolean mightContain(int k) {
+        long h = hash(k);
+        int block = blockOf(h);
+        int low = (int) h;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            if ((words[block + i] & (1 << ((low * SALT[i]) >>> 27))) == 0) {
+                negatives++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * public void recordFalsePositive()
+     * <p>
+     * The owner found no key after mightContain returned true
+     * Complexity: O(1)
+     */
+    public void recordFalsePositive() {
+        falsePositives++;
+    }
+
+    /**
+     * public boolean needsRebuild()
+     * <p>
+     * Returns true if the filter is stale, holds twice the keys it was sized for, or more of its keys
+     * were removed than are left. The rebuild is paid for by the adds and removes since the last one.
+     * Complexity: O(1)
+     */
+    public boolean needsRebuild() {
+        return stale || (added > 2 * capacity) || ((removed > BLOCK_WORDS) && (removed > added - removed));
+    }
+
+    /**
+     * public double falsePositiveRate()
+     * <p>
+     * Returns the measured share of lookups of missing keys that the filter let through, 0 before any
+     * Complexity: O(1)
+     */
+    public double falsePositiveRate() {
+        long misses = negatives + falsePositives;
+        return (misses == 0) ? 0 : (double) falsePositives / misses;
+    }
+
+    /**
+     * public double expectedFalsePositiveRate()
+     * <p>
+     * Returns the chance that a missing key passes, from the share of set bits in the filter
+     * Complexity: O(size of the filter)
+     */
+    public double expectedFalsePositiveRate() {
+        if (words.length == 0) {
+            return 1;
+        }
+        long set = 0;
+        for (int w : words) {
+            set += Integer.bitCount(w);
+        }
+        return Math.pow((double) set / (32L * words.length), BLOCK_WORDS);
+    }
+
+    /**
+     * public long negatives()
+     * <p>
+     * Returns the number of lookups the filter answered without the tree
+     * Complexity: O(1)
+     */
+    public long negatives() {
+        return negatives;
+    }
+
+    /**
+     * public long falsePositives()
+     * <p>
+     * Returns the number of lookups the filter let through for a missing key
+     * Complexity: O(1)
+     */
+    public long falsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * public int rebuilds()
+     * <p>
+     * Returns the number of times the filter was built from the keys of its owner
+     * Complexity: O(1)
+     */
+    public int rebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * public long memoryBytes()
+     * <p>
+     * Returns the bytes of the bit array
+     * Complexity: O(1)
+     */
+    public long memoryBytes() {
+        return 4L * words.length;
+    }
+
+}
@@ -0,0 +1,282 @@
+import java.util.function.IntFunction;
+
+/**
+ *
+ * LongAVLTree
+ *
+ * A rank balanced tree with distinct long keys and values of type V.
+ * The keys are kept in a long field of the node and compared as primitives, nothing is boxed.
+ * Balancing, join and split are shared with AVLTree through RankBalancedTree.
+ *
+ */
+
+public class LongAVLTree<V> extends RankBalancedTree<LongAVLTree.Node<V>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Node VIRTUAL_NODE = new Node();
+
+    public LongAVLTree() {
+        this(AVLTree.Engine.AVL);
+    }
+
+    /**
+     * public LongAVLTree(AVLTree.Engine engine)
+     * <p>
+     * Creates an empty tree that is kept balanced by the rules of engine.
+     */
+    @SuppressWarnings("unchecked")
+    public LongAVLTree(AVLTree.Engine engine) {
+        super(engine, (Node<V>) VIRTUAL_NODE);
+    }
+
+    protected boolean lessThan(Node<V> a, Node<V> b) {
+        return a.key < b.key;
+    }
+
+    protected RankBalancedTree<Node<V>> newLinkedTree() {
+        return new LongAVLTree<>(engine);
+    }
+
+    /**
+     * public V search(long k)
+     * <p>
+     * Returns the value of an item with key k if it exists in the tree.
+     * otherwise, returns null.
+     * complexity: O(log n)
+     */
+    public V search(long k) {
+        Node<V> x = root;
+        while (x.isRealNode()) {
+            if (k == x.key) {
+                return x.value;
+            }
+            x = (k < x.key) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * public int insert(long k, V v)
+     * <p>
+     * Inserts an item with key k and value v to the tree.
+     * Returns the number of re-balancing operations, or -1 if an item with key k already exists in the tree.
+     * Complexity: O(log n)
+     */
+    public int insert(long k, V v) {
+        Node<V> parent = null;
+        if (!empty()) {
+            parent = treePosition(k);
+            if (k == parent.key)
+                return -1;
+        }
+        return insertNode(parent, new Node<>(k, v));
+    }
+
+    /**
+     * precondition: !empty()
+     * return the node with key k if exists
+     * else returns the node that should be its parent
+     * Complexity: O(log n)
+     */
+    private Node<V> treePosition(long k) {
+        Node<V> x = root;
+        Node<V> y = null;
+        while (x.isRealNode()) {
+            y = x;
+            if (k == x.key) {
+                return x;
+            }
+            x = (k < x.key) ? x.left : x.right;
+        }
+        return y;
+    }
+
+    /**
+     * public int delete(long k)
+     *
+     * Deletes an item with key k from the tree, if it is there.
+     * Returns the number of re-balancing operations, or -1 if an item with key k was not found in the tree.
+     * Complexity: O(log n)
+     */
+    public int delete(long k) {
+        if (empty()) {
+            return -1;
+        }
+        Node<V> x = treePosition(k);
+        if (x.key != k) {
+            return -1;
+        }
+        return removeNode(x);
+    }
+
+    /**
+     * public V min()
+     *
+     * Returns the value of the item with the smallest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public V min() {
+        return (min == null) ? null : min.value;
+    }
+
+    /**
+     * public V max()
+     *
+     * Returns the value of the item with the largest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public V max() {
+        return (max == null) ? null : max.value;
+    }
+
+    /**
+     * public long[] keysToArray()
+     *
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     * Complexity: O(n)
+     */
+    public long[] keysToArray() {
+        long[] keys = new long[size()];
+        keysToArrayInner(root, keys, 0);
+        return keys;
+    }
+
+    private int keysToArrayInner(Node<V> node, long[] keys, int i) {
+        for (Node<V> x = firstNode(node); x != null; x = nextNode(x, node)) {
+            keys[i++] = x.key;
+        }
+        return i;
+    }
+
+    /**
+     * public V[] infoToArray(IntFunction<V[]> generator)
+     *
+     * Returns an array from generator which contains all values in the tree,
+     * sorted by their respective keys.
+     * Complexity: O(n)
+     */
+    public V[] infoToArray(IntFunction<V[]> generator) {
+        V[] info = generator.apply(size());
+        infoToArrayInner(root, info, 0);
+        return info;
+    }
+
+    private int infoToArrayInner(Node<V> node, V[] info, int i) {
+        for (Node<V> x = firstNode(node); x != null; x = nextNode(x, node)) {
+            info[i++] = x.value;
+        }
+        return i;
+    }
+
+    /**
+     * public Node<V> getRoot()
+     *
+     * Returns the root node, or a virtual node if the tree is empty
+     * Complexity: O(1)
+     */
+    public Node<V> getRoot() {
+        return root;
+    }
+
+    /**
+     * public LongAVLTree<V>[] split(long x)
+     *
+     * splits the tree into 2 trees according to the key x.
+     * Returns an array [t1, t2]. keys(t1) < x < keys(t2).
+     * precondition: search(x) != null
+     * Complexity: O(log n)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LongAVLTree<V>[] split(long x) {
+        LongAVLTree<V>[] result = new LongAVLTree[] {new LongAVLTree<V>(engine), new LongAVLTree<V>(engine)};
+        splitNodes(treePosition(x), result);
+        return result;
+    }
+
+    /**
+     * public int join(Node<V> x, LongAVLTree<V> t)
+     *
+     * joins t and x with the tree.
+     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t has the same engine as the tree.
+     * Complexity: O(log n)
+     */
+    public int join(Node<V> x, LongAVLTree<V> t) {
+        return joinNodes(x, t);
+    }
+
+    /**
+     * public static class Node
+     *
+     * A node of LongAVLTree, the height field is the rank of the node.
+     */
+    public static class Node<V> implements RankBalancedTree.RankNode<Node<V>> {
+
+        private static final int virtualNodeHeight = -1;
+        private long key;
+        private V value;
+        private Node<V> left;
+        private Node<V> right;
+        private Node<V> parent;
+        private int height;
+        private int size;
+
+        private Node() {
+            height = virtualNodeHeight;
+        }
+
+        public Node(long k, V value) {
+            this.key = k;
+            this.value = value;
+            this.size = 1;
+            this.height = 0;
+        }
+
+        public long getKey() {
+            return key;
+        }
+        public V getValue() {
+            return value;
+        }
+        public void setLeft(Node<V> node) {
+            left = node;
+        }
+        public Node<V> getLeft() {
+            return left;
+        }
+        public void setRight(Node<V> node) {
+            right = node;
+        }
+        public Node<V> getRight() {
+            return right;
+        }
+        public void setParent(Node<V> node) {
+            parent = node;
+        }
+        public Node<V> getParent() {
+            return parent;
+        }
+        public boolean isRealNode() {
+            return (height != virtualNodeHeight);
+        }
+        public void setHeight(int height) {
+            this.height = height;
+        }
+        public int getHeight() {
+            return height;
+        }
+        public void setSize(int k) {
+            size = k;
+        }
+        public int getSize() {
+            return size;
+        }
+        public void updateSizeByChildren() {
+            size = 1 + right.size + left.size;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ *
+ * NodeIndex
+ *
+ * An open addressing hash table from int keys to the nodes of an AVLTree, with linear probing.
+ * The table is kept between a quarter and a half full, a removal shifts the entries of its probe
+ * run back instead of leaving a tombstone, so a lookup never reads past the run of its key.
+ *
+ */
+
+public class NodeIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private int[] keys;
+    // null is an empty slot
+    private AVLTree.IAVLNodeOur[] nodes;
+    private int count;
+    // 32 - log2 of the capacity, the hash takes the top bits of the mixed key
+    private int shift;
+
+    public NodeIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        nodes = new AVLTree.IAVLNodeOur[capacity];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        count = 0;
+    }
+
+    private int slot(int k) {
+        // Fibonacci hashing, sequential keys spread over the table
+        return (k * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * public AVLTree.IAVLNodeOur get(int k)
+     * <p>
+     * Returns the node of key k, or null if there is none
+     * Complexity: O(1) expected
+     */
+    public AVLTree.IAVLNodeOur get(int k) {
+        int mask = keys.length - 1;
+        for (int i = slot(k); nodes[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == k) {
+                return nodes[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * public void put(AVLTree.IAVLNodeOur node)
+     * <p>
+     * Maps the key of node to node, replacing the node the key had
+     * Complexity: O(1) expected, amortized
+     */
+    public void put(AVLTree.IAVLNodeOur node) {
+        int k = node.getKey();
+        int mask = keys.length - 1;
+        int i = slot(k);
+        while (nodes[i] != null) {
+            if (keys[i] == k) {
+                nodes[i] = node;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = k;
+        nodes[i] = node;
+        count++;
+        if (2 * count > keys.length) {
+            resize(2 * keys.length);
+        }
+    }
+
+    /**
+     * public void remove(int k)
+     * <p>
+     * Removes key k if it is there
+     * Complexity: O(1) expected, amortized
+     */
+    public void remove(int k) {
+        int mask = keys.length - 1;
+        int i = slot(k);
+        while (true) {
+            if (nodes[i] == null) {
+                return;
+            }
+            if (keys[i] == k) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        // move back every later entry of the run whose home slot is not between the hole and it
+        int hole = i;
+        for (int j = (i + 1) & mask; nodes[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                nodes[hole] = nodes[j];
+                hole = j;
+            }
+        }
+        nodes[hole] = null;
+        count--;
+        if ((keys.length > MIN_CAPACITY) && (8 * count < keys.length)) {
+            resize(keys.length / 2);
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        AVLTree.IAVLNodeOur[] oldNodes = nodes;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldNodes.length; j++) {
+            if (oldNodes[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (nodes[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                nodes[i] = oldNodes[j];
+                count++;
+            }
+        }
+    }
+
+    /**
+     * public void clear()
+     * <p>
+     * Removes all keys
+     * Complexity: O(1)
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of keys
+     * Complexity: O(1)
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * public long memoryBytes()
+     * <p>
+     * Returns the bytes of the two arrays, taking 4 bytes for a (compressed) reference
+     * Complexity: O(1)
+     */
+    public long memoryBytes() {
+        return 8L * keys.length;
+    }
+
+}
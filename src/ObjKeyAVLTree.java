@@ -0,0 +1,296 @@
+import java.util.Comparator;
+import java.util.function.IntFunction;
+
+/**
+ *
+ * ObjKeyAVLTree
+ *
+ * A rank balanced tree with distinct keys of type K ordered by a comparator, and values of type V.
+ * Balancing, join and split are shared with AVLTree through RankBalancedTree.
+ *
+ */
+
+public class ObjKeyAVLTree<K, V> extends RankBalancedTree<ObjKeyAVLTree.Node<K, V>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Node VIRTUAL_NODE = new Node();
+    private final Comparator<? super K> comparator;
+
+    public ObjKeyAVLTree(Comparator<? super K> comparator) {
+        this(comparator, AVLTree.Engine.AVL);
+    }
+
+    /**
+     * public ObjKeyAVLTree(Comparator<? super K> comparator, AVLTree.Engine engine)
+     * <p>
+     * Creates an empty tree ordered by comparator that is kept balanced by the rules of engine.
+     */
+    @SuppressWarnings("unchecked")
+    public ObjKeyAVLTree(Comparator<? super K> comparator, AVLTree.Engine engine) {
+        super(engine, (Node<K, V>) VIRTUAL_NODE);
+        this.comparator = comparator;
+    }
+
+    protected boolean lessThan(Node<K, V> a, Node<K, V> b) {
+        return comparator.compare(a.key, b.key) < 0;
+    }
+
+    protected RankBalancedTree<Node<K, V>> newLinkedTree() {
+        return new ObjKeyAVLTree<>(comparator, engine);
+    }
+
+    /**
+     * public Comparator<? super K> comparator()
+     * <p>
+     * Returns the order of the keys.
+     * Complexity: O(1)
+     */
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * public V search(K k)
+     * <p>
+     * Returns the value of an item with key k if it exists in the tree.
+     * otherwise, returns null.
+     * complexity: O(log n)
+     */
+    public V search(K k) {
+        Node<K, V> x = root;
+        while (x.isRealNode()) {
+            int c = comparator.compare(k, x.key);
+            if (c == 0) {
+                return x.value;
+            }
+            x = (c < 0) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * public int insert(K k, V v)
+     * <p>
+     * Inserts an item with key k and value v to the tree.
+     * Returns the number of re-balancing operations, or -1 if an item with key k already exists in the tree.
+     * Complexity: O(log n)
+     */
+    public int insert(K k, V v) {
+        Node<K, V> parent = null;
+        if (!empty()) {
+            parent = treePosition(k);
+            if (comparator.compare(k, parent.key) == 0)
+                return -1;
+        }
+        return insertNode(parent, new Node<>(k, v));
+    }
+
+    /**
+     * precondition: !empty()
+     * return the node with key k if exists
+     * else returns the node that should be its parent
+     * Complexity: O(log n)
+     */
+    private Node<K, V> treePosition(K k) {
+        Node<K, V> x = root;
+        Node<K, V> y = null;
+        while (x.isRealNode()) {
+            y = x;
+            int c = comparator.compare(k, x.key);
+            if (c == 0) {
+                return x;
+            }
+            x = (c < 0) ? x.left : x.right;
+        }
+        return y;
+    }
+
+    /**
+     * public int delete(K k)
+     *
+     * Deletes an item with key k from the tree, if it is there.
+     * Returns the number of re-balancing operations, or -1 if an item with key k was not found in the tree.
+     * Complexity: O(log n)
+     */
+    public int delete(K k) {
+        if (empty()) {
+            return -1;
+        }
+        Node<K, V> x = treePosition(k);
+        if (comparator.compare(x.key, k) != 0) {
+            return -1;
+        }
+        return removeNode(x);
+    }
+
+    /**
+     * public V min()
+     *
+     * Returns the value of the item with the smallest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public V min() {
+        return (min == null) ? null : min.value;
+    }
+
+    /**
+     * public V max()
+     *
+     * Returns the value of the item with the largest key in the tree,
+     * or null if the tree is empty.
+     * Complexity: O(1)
+     */
+    public V max() {
+        return (max == null) ? null : max.value;
+    }
+
+    /**
+     * public K[] keysToArray(IntFunction<K[]> generator)
+     *
+     * Returns an array from generator which contains all keys in the tree, sorted.
+     * Complexity: O(n)
+     */
+    public K[] keysToArray(IntFunction<K[]> generator) {
+        K[] keys = generator.apply(size());
+        keysToArrayInner(root, keys, 0);
+        return keys;
+    }
+
+    private int keysToArrayInner(Node<K, V> node, K[] keys, int i) {
+        for (Node<K, V> x = firstNode(node); x != null; x = nextNode(x, node)) {
+            keys[i++] = x.key;
+        }
+        return i;
+    }
+
+    /**
+     * public V[] infoToArray(IntFunction<V[]> generator)
+     *
+     * Returns an array from generator which contains all values in the tree,
+     * sorted by their respective keys.
+     * Complexity: O(n)
+     */
+    public V[] infoToArray(IntFunction<V[]> generator) {
+        V[] info = generator.apply(size());
+        infoToArrayInner(root, info, 0);
+        return info;
+    }
+
+    private int infoToArrayInner(Node<K, V> node, V[] info, int i) {
+        for (Node<K, V> x = firstNode(node); x != null; x = nextNode(x, node)) {
+            info[i++] = x.value;
+        }
+        return i;
+    }
+
+    /**
+     * public Node<K, V> getRoot()
+     *
+     * Returns the root node, or a virtual node if the tree is empty
+     * Complexity: O(1)
+     */
+    public Node<K, V> getRoot() {
+        return root;
+    }
+
+    /**
+     * public ObjKeyAVLTree<K, V>[] split(K x)
+     *
+     * splits the tree into 2 trees according to the key x.
+     * Returns an array [t1, t2]. keys(t1) < x < keys(t2).
+     * precondition: search(x) != null
+     * Complexity: O(log n)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ObjKeyAVLTree<K, V>[] split(K x) {
+        ObjKeyAVLTree<K, V>[] result = new ObjKeyAVLTree[] {
+                new ObjKeyAVLTree<K, V>(comparator, engine), new ObjKeyAVLTree<K, V>(comparator, engine)};
+        splitNodes(treePosition(x), result);
+        return result;
+    }
+
+    /**
+     * public int join(Node<K, V> x, ObjKeyAVLTree<K, V> t)
+     *
+     * joins t and x with the tree.
+     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t has the same engine and comparator.
+     * Complexity: O(log n)
+     */
+    public int join(Node<K, V> x, ObjKeyAVLTree<K, V> t) {
+        return joinNodes(x, t);
+    }
+
+    /**
+     * public static class Node
+     *
+     * A node of ObjKeyAVLTree, the height field is the rank of the node.
+     */
+    public static class Node<K, V> implements RankBalancedTree.RankNode<Node<K, V>> {
+
+        private static final int virtualNodeHeight = -1;
+        private K key;
+        private V value;
+        private Node<K, V> left;
+        private Node<K, V> right;
+        private Node<K, V> parent;
+        private int height;
+        private int size;
+
+        private Node() {
+            height = virtualNodeHeight;
+        }
+
+        public Node(K k, V value) {
+            this.key = k;
+            this.value = value;
+            this.size = 1;
+            this.height = 0;
+        }
+
+        public K getKey() {
+            return key;
+        }
+        public V getValue() {
+            return value;
+        }
+        public void setLeft(Node<K, V> node) {
+            left = node;
+        }
+        public Node<K, V> getLeft() {
+            return left;
+        }
+        public void setRight(Node<K, V> node) {
+            right = node;
+        }
+        public Node<K, V> getRight() {
+            return right;
+        }
+        public void setParent(Node<K, V> node) {
+            parent = node;
+        }
+        public Node<K, V> getParent() {
+            return parent;
+        }
+        public boolean isRealNode() {
+            return (height != virtualNodeHeight);
+        }
+        public void setHeight(int height) {
+            this.height = height;
+        }
+        public int getHeight() {
+            return height;
+        }
+        public void setSize(int k) {
+            size = k;
+        }
+        public int getSize() {
+            return size;
+        }
+        public void updateSizeByChildren() {
+            size = 1 + right.size + left.size;
+        }
+    }
+
+}
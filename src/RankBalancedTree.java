@@ -0,0 +1,1331 @@
+/**
+ *
+ * RankBalancedTree
+ *
+ * The key independent part of the rank balanced trees: the rebalancing rules of every engine,
+ * rotations, removal of nodes, join, split and the subtree sizes.
+ * A subclass owns the keys: it searches with its own key type (so primitive keys are never boxed),
+ * creates the nodes, and orders two nodes in lessThan.
+ *
+ */
+
+public abstract class RankBalancedTree<N extends RankBalancedTree.RankNode<N>> {
+
+    protected N root;
+    protected N max;
+    protected N min;
+    protected final AVLTree.Engine engine;
+    protected final N virtualNode;
+    // lazy sizes: the subtree sizes are not kept by insert/delete, lazyCount is the size of the tree
+    private boolean lazySizes;
+    private boolean sizesDirty;
+    private int lazyCount;
+
+    protected RankBalancedTree(AVLTree.Engine engine, N virtualNode) {
+        this.engine = engine;
+        this.virtualNode = virtualNode;
+        root = virtualNode;
+        max = null;
+        min = null;
+        lazySizes = false;
+        sizesDirty = false;
+        lazyCount = 0;
+    }
+
+    /**
+     * protected abstract boolean lessThan(N a, N b)
+     * <p>
+     * Returns true if the key of a is smaller than the key of b
+     */
+    protected abstract boolean lessThan(N a, N b);
+
+    /**
+     * protected abstract RankBalancedTree<N> newLinkedTree()
+     * <p>
+     * Returns an empty tree of the same kind and engine, made of nodes
+     */
+    protected abstract RankBalancedTree<N> newLinkedTree();
+
+    /**
+     * public boolean empty()
+     * <p>
+     * Returns true if and only if the tree is empty.
+     * complexity: O(1)
+     */
+    public boolean empty() {
+        return !root.isRealNode();
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of nodes in the tree.
+     * Complexity: O(1)
+     */
+    public int size() {
+        if (lazySizes) {
+            return lazyCount;
+        }
+        return root.getSize();
+    }
+
+    /**
+     * protected int insertNode(N parent, N node)
+     * <p>
+     * Inserts the new node under parent, which is where the search for node's key ended,
+     * or as the root if parent is null.
+     * Returns the number of re-balancing operations.
+     * precondition: node's key is not in the tree, parent == null iff the tree is empty
+     * Complexity: O(log n)
+     */
+    protected int insertNode(N parent, N node) {
+        node.setLeft(virtualNode);
+        node.setRight(virtualNode);
+        node.setHeight(0);
+        node.updateSizeByChildren();
+        node.setParent(parent);
+        updateMinMax(node);
+        if (parent == null) {
+            root = node;
+            lazyCount = 1;
+            return 0;
+        }
+        if (lazySizes) {
+            lazyCount++;
+            sizesDirty = true;
+        }
+        if (lessThan(node, parent))
+            parent.setLeft(node);
+        else
+            parent.setRight(node);
+        updateSizeUpwards(parent, 1);
+        return rebalanceAfterAttach(node);
+    }
+
+    /**
+     * protected int removeNode(N x)
+     * <p>
+     * Removes node x from the tree and rebalances, min and max move to x's neighbour if x was one of them.
+     * Returns the number of re-balancing operations.
+     * Complexity: O(log n)
+     */
+    protected int removeNode(N x) {
+        if (lazySizes) {
+            lazyCount--;
+            sizesDirty = true;
+        }
+        // the min has no left son and the max no right son, so their neighbour is at most a step or a climb away
+        if (x == min) {
+            min = successor(x);
+        }
+        if (x == max) {
+            max = predecessor(x);
+        }
+        // the lowest node that might have an illegal rank difference after the removal
+        N start;
+        // is x has two sons
+        if (x.getLeft().isRealNode() && (x.getRight().isRealNode())) {
+            // find x's successor, it is unary or a leaf
+            N suc = successor(x);
+            start = (suc.getParent() == x) ? suc : suc.getParent();
+            // remove successor from tree
+            deleteUnaryNode(suc);
+            // replace x with its successor
+            replaceNode(x, suc);
+        }
+        // if x is unary or a leaf
+        else {
+            start = x.getParent();
+            deleteUnaryNode(x);
+        }
+        return rebalanceAfterRemove(start);
+    }
+
+    /**
+     * protected int joinNodes(N x, RankBalancedTree<N> t)
+     * <p>
+     * joins t and x with the tree, both made of nodes.
+     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+     * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
+     * Complexity: O(log n)
+     */
+    protected int joinNodes(N x, RankBalancedTree<N> t) {
+        if (!lazySizes) {
+            t.ensureSizes();
+            return joinLinked(x, t);
+        }
+        // the sizes in the joined tree are stale if they were stale in either tree
+        int count = size() + t.size() + 1;
+        sizesDirty = sizesDirty || t.sizesDirty;
+        int result = joinLinked(x, t);
+        lazyCount = count;
+        return result;
+    }
+
+    /**
+     * protected void splitNodes(N nodeX, RankBalancedTree<N>[] result)
+     * <p>
+     * splits the tree around nodeX into result[0] (smaller keys) and result[1] (bigger keys).
+     * The trees in result must be empty trees of nodes, they get the lazy sizes mode of the tree.
+     * Complexity: O(log n)
+     */
+    protected void splitNodes(N nodeX, RankBalancedTree<N>[] result) {
+        ensureSizes();
+        result[0].root = nodeX.getLeft();
+        result[0].root.setParent(null);
+        result[1].root = nodeX.getRight();
+        result[1].root.setParent(null);
+        RankBalancedTree<N> tempTree = newLinkedTree();
+        N son = nodeX;
+        nodeX = nodeX.getParent();
+        int changeIndex;
+        while (nodeX != null) {
+            if (nodeX.getRight() == son) {
+                tempTree.root = nodeX.getLeft();
+                changeIndex = 0;
+            }
+            else {
+                tempTree.root = nodeX.getRight();
+                changeIndex = 1;
+            }
+            son = nodeX;
+            nodeX = nodeX.getParent();
+            tempTree.root.setParent(null);
+            result[changeIndex].joinNodes(son, tempTree);
+        }
+        for (RankBalancedTree<N> t : result) {
+            t.resetMinMax();
+            t.setLazySizes(lazySizes);
+        }
+    }
+
+    /**
+     * protected void linkBuiltNode(N node, N left, N right)
+     * <p>
+     * Hangs left and right, two subtrees of a balanced build whose sizes differ by at most one,
+     * under node and sets node's size and rank. The ranks are valid for every engine:
+     * the height for AVL and WAVL, and floor(log2(size + 1)) - 1 for red-black.
+     * Complexity: O(1)
+     */
+    protected void linkBuiltNode(N node, N left, N right) {
+        node.setLeft(left);
+        node.setRight(right);
+        if (left.isRealNode()) {
+            left.setParent(node);
+        }
+        if (right.isRealNode()) {
+            right.setParent(node);
+        }
+        node.updateSizeByChildren();
+        if (engine == AVLTree.Engine.RED_BLACK) {
+            node.setHeight(31 - Integer.numberOfLeadingZeros(node.getSize() + 1) - 1);
+        } else {
+            node.setHeight(Math.max(left.getHeight(), right.getHeight()) + 1);
+        }
+    }
+
+    /**
+     * protected void setBuiltRoot(N node)
+     * <p>
+     * Makes node, the root of a balanced build, the root of the tree
+     * Complexity: O(log n)
+     */
+    protected void setBuiltRoot(N node) {
+        root = node;
+        root.setParent(null);
+        sizesDirty = false;
+        lazyCount = root.getSize();
+        resetMinMax();
+    }
+
+    /**
+     * protected void moveFrom(RankBalancedTree<N> other)
+     * <p>
+     * Takes over the nodes of other, for operations that rebuild a tree out of split parts.
+     * other should not be used afterwards
+     * Complexity: O(1)
+     */
+    protected void moveFrom(RankBalancedTree<N> other) {
+        root = other.root;
+        min = other.min;
+        max = other.max;
+        lazySizes = other.lazySizes;
+        sizesDirty = other.sizesDirty;
+        lazyCount = other.lazyCount;
+    }
+
+    /**
+     * protected boolean isAugmented()
+     * <p>
+     * Returns true if the nodes keep more than the size in updateSizeByChildren,
+     * then sizes are always recomputed from the sons instead of being changed by a difference
+     * Complexity: O(1)
+     */
+    protected boolean isAugmented() {
+        return false;
+    }
+
+    /**
+     * protected boolean isLazySizes()
+     * <p>
+     * Returns true if the tree is in the lazy sizes mode
+     * Complexity: O(1)
+     */
+    protected boolean isLazySizes() {
+        return lazySizes;
+    }
+
+    /**
+     * protected void clearNodes()
+     * <p>
+     * Drops all nodes, the tree is empty afterwards
+     * Complexity: O(1)
+     */
+    protected void clearNodes() {
+        root = virtualNode;
+        min = null;
+        max = null;
+        sizesDirty = false;
+        lazyCount = 0;
+    }
+
+    /**
+     * public void setLazySizes(boolean lazySizes)
+     * <p>
+     * In the lazy sizes mode insert and delete do not walk up to the root to fix subtree sizes,
+     * the number of items is kept in a counter and the subtree sizes are recomputed
+     * only when an operation needs them (split).
+     * Turning the mode off recomputes the sizes.
+     * Complexity: O(1), O(n) if sizes are recomputed
+     */
+    public void setLazySizes(boolean lazySizes) {
+        if (!lazySizes) {
+            ensureSizes();
+        }
+        else if (!this.lazySizes) {
+            lazyCount = root.getSize();
+        }
+        this.lazySizes = lazySizes;
+    }
+
+    /**
+     * protected void ensureSizes()
+     * <p>
+     * Recomputes all subtree sizes if insert/delete left them stale in the lazy sizes mode
+     * Complexity: O(1), O(n) if sizes are recomputed
+     */
+    protected void ensureSizes() {
+        if (sizesDirty) {
+            recomputeSizes(root);
+            sizesDirty = false;
+        }
+    }
+
+    /**
+     * private int recomputeSizes(N node)
+     * <p>
+     * Sets the sizes in node's subtree from the leaves up and returns node's size.
+     * A post-order walk on the parent pointers, without recursion
+     * Complexity: O(size of subtree)
+     */
+    private int recomputeSizes(N node) {
+        if (!node.isRealNode()) {
+            return 0;
+        }
+        N x = deepestFirst(node);
+        while (true) {
+            x.updateSizeByChildren();
+            if (x == node) {
+                return x.getSize();
+            }
+            N parent = x.getParent();
+            if ((x == parent.getLeft()) && parent.getRight().isRealNode()) {
+                x = deepestFirst(parent.getRight());
+            }
+            else {
+                x = parent;
+            }
+        }
+    }
+
+    /**
+     * private N deepestFirst(N node)
+     * <p>
+     * Returns the first node of the post-order walk of node's subtree
+     * Complexity: O(log n)
+     */
+    private N deepestFirst(N node) {
+        while (true) {
+            if (node.getLeft().isRealNode()) {
+                node = node.getLeft();
+            }
+            else if (node.getRight().isRealNode()) {
+                node = node.getRight();
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * protected static N firstNode(N subtree)
+     * <p>
+     * Returns the smallest node of subtree, or null if subtree is virtual.
+     * With nextNode it walks a subtree in order on the parent pointers, without recursion or a stack
+     * Complexity: O(log n)
+     */
+    protected static <N extends RankNode<N>> N firstNode(N subtree) {
+        if (!subtree.isRealNode()) {
+            return null;
+        }
+        while (subtree.getLeft().isRealNode()) {
+            subtree = subtree.getLeft();
+        }
+        return subtree;
+    }
+
+    /**
+     * protected static N nextNode(N x, N subtree)
+     * <p>
+     * Returns the node after x in subtree, or null if x is the biggest node of subtree
+     * Complexity: O(1) amortized over a walk of the subtree
+     */
+    protected static <N extends RankNode<N>> N nextNode(N x, N subtree) {
+        if (x.getRight().isRealNode()) {
+            return firstNode(x.getRight());
+        }
+        while (x != subtree) {
+            N parent = x.getParent();
+            if (parent.getLeft() == x) {
+                return parent;
+            }
+            x = parent;
+        }
+        return null;
+    }
+
+    /**
+     * public AVLTree.Engine getEngine()
+     * <p>
+     * Returns the balancing rules of the tree.
+     * Complexity: O(1)
+     */
+    public AVLTree.Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * private int rebalanceAfterAttach(N node)
+     * <p>
+     * node is a new leaf that was just hung under its parent.
+     * Fixes the ranks by the rules of the engine and returns the number of re-balancing operations done
+     * Complexity: O(log n)
+     */
+    private int rebalanceAfterAttach(N node) {
+        N parent = node.getParent();
+        if (engine == AVLTree.Engine.RED_BLACK) {
+            // the parent of a new leaf has rank 0, so the leaf is a 0-child
+            return rebalanceRedBlackInsert(node);
+        }
+        if (parent.getHeight() != 0)
+            // if parent is not a leaf then no rebalance is needed
+            return 0;
+        promote(parent);
+        return 1 + rebalanceAfterInsert(parent.getParent(), parent);
+    }
+
+    /**
+     * private void updateSizeUpwards(N node, int k)
+     * <p>
+     * Add k to node's size up to the root, nothing to do if the sizes are stale anyway
+     * Complexity: O(log n)
+     */
+    private void updateSizeUpwards(N node, int k) {
+        if (isAugmented()) {
+            // an aggregate cannot be changed by a difference, it is recomputed from the sons
+            updateSizeUpByChildren(node);
+            return;
+        }
+        if (sizesDirty) {
+            return;
+        }
+        while (node != null) {
+            node.setSize(node.getSize() + k);
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * private void updateSizeUpByChildren(N node)
+     * <p>
+     * update size of node according to its children up to the root,
+     * nothing to do if the sizes are stale anyway
+     * Complexity: O(log n)
+     */
+    private void updateSizeUpByChildren(N node) {
+        if (sizesDirty) {
+            return;
+        }
+        while (node != null) {
+            node.updateSizeByChildren();
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * private void updateMinMax(N node)
+     * <p>
+     * Updates pointers to min and max after insert
+     * Complexity: O(1)
+     */
+    private void updateMinMax(N node) {
+        if ((this.max == null ) || lessThan(this.max, node)) {
+            this.max = node;
+        }
+        if ((this.min == null) || lessThan(node, this.min)) {
+            this.min = node;
+        }
+    }
+
+    /**
+     * private int rebalanceAfterInsert(N node, N son)
+     * <p>
+     * Rebalance the tree going up and returns the number of re-balancing operations done
+     * input are node and its son that their rank difference might be illegal
+     * Complexity: O(log n)
+     */
+    private int rebalanceAfterInsert(N node, N son) {
+        int counter = 0;
+        while ((node != null) && (node.isRealNode())) {
+            int diffRight = getRightHeightDiff(node);
+            int diffLeft = getLeftHeightDiff(node);
+            if (isBalanced(diffRight, diffLeft)) {
+                return counter;
+            }
+            // case 1:
+            if (diffRight + diffLeft == 1) {
+                promote(node);
+                counter++;
+                son = node;
+                node = node.getParent();
+                continue;
+            }
+            int sonDiffRight = getRightHeightDiff(son);
+            int sonDiffLeft = getLeftHeightDiff(son);
+            // case 4 (only after join): son is (1,1), rotate and promote it
+            if ((sonDiffLeft == 1) && (sonDiffRight == 1)) {
+                if (diffLeft == 0) {
+                    rotateRight(son, node);
+                } else {
+                    rotateLeft(son, node);
+                }
+                promote(son);
+                counter += 2;
+                node = son.getParent();
+                continue;
+            }
+            // case 2:
+            if ((diffLeft == 0) && (sonDiffLeft == 1)) {
+                rotateRight(son, node);
+                demote(node);
+                return counter + 2;
+            }
+            else if ((diffRight == 0) && (sonDiffRight == 1)) {
+                rotateLeft(son, node);
+                demote(node);
+                return counter + 2;
+            }
+            //case 3:
+            else {
+                if (diffRight == 0) {
+                    doubleRotateRightLeft(son, node);
+                } else {
+                    doubleRotateLeftRight(son, node);
+                }
+                demote(node);
+                demote(son);
+                promote(node.getParent());
+                return counter + 5;
+            }
+        }
+        return counter;
+    }
+
+    /** private int getLeftHeightDiff(N node)
+     * <p>
+     * return the height difference between node and its left son
+     * Complexity: O(1)
+     */
+    private int getLeftHeightDiff(N node) {
+        return node.getHeight() - node.getLeft().getHeight();
+    }
+
+    /** private int getRightHeightDiff(N node)
+     * <p>
+     * return the height difference between node and its right son
+     * Complexity: O(1)
+     */
+    private int getRightHeightDiff(N node) {
+        return node.getHeight() - node.getRight().getHeight();
+    }
+
+    /** private boolean isBalanced(int diffRight, int diffLeft)
+     * <p>
+     * check if the node has legal height difference with its sons
+     * Complexity O(1)
+     */
+    private boolean isBalanced(int diffRight, int diffLeft) {
+        if (engine == AVLTree.Engine.WAVL) {
+            return (diffRight == 1 || diffRight == 2) && (diffLeft == 1 || diffLeft == 2);
+        }
+        return ((diffRight == 1) && (diffLeft == 1)) || ((diffRight == 1) && (diffLeft == 2)) || ((diffRight == 2) && (diffLeft == 1));
+    }
+
+    /** private void promote(N node)
+     * <p>
+     * promote node's rank(=height) by 1
+     * Complexity: O(1)
+     */
+    private void promote(N node) {
+        node.setHeight(node.getHeight() + 1);
+    }
+
+    /** private void demote(N node)
+     * <p>
+     * demote node's rank(=height) by 1
+     * Complexity: O(1)
+     */
+    private void demote(N node) {
+        node.setHeight(node.getHeight() - 1);
+    }
+
+    /** private void demote(N node)
+     * <p>
+     * demote node's rank(=height) by 2
+     * Complexity: O(1)
+     */
+    private void doubleDemote(N node) {
+        node.setHeight(node.getHeight() - 2);
+    }
+
+    /**
+     * private void rotateRight(N son, N parent)
+     * <p>
+     * perform a right rotation on son and parent nodes
+     * Complexity: O(1)
+     */
+    private void rotateRight(N son, N parent) {
+        parent.setLeft(son.getRight());
+        parent.getLeft().setParent(parent);
+        son.setRight(parent);
+        updateParentsAndSizeAfterRotation(son, parent);
+    }
+
+    /**
+     * private void rotateLeft(N son, N parent)
+     * <p>
+     * perform a left rotation on son and parent nodes
+     * Complexity: O(1)
+     */
+    private void rotateLeft(N son, N parent) {
+        parent.setRight(son.getLeft());
+        parent.getRight().setParent(parent);
+        son.setLeft(parent);
+        updateParentsAndSizeAfterRotation(son, parent);
+    }
+
+    /**
+     * private void updateParentsAndSizeAfterRotation(N son, N parent)
+     * <p>
+     * Updates the parent fields for nodes after a rotation
+     * Complexity: O(1)
+     */
+    private void updateParentsAndSizeAfterRotation(N son, N parent) {
+        son.setParent(parent.getParent());
+        parent.setParent(son);
+        if (son.getParent() != null) {
+            if (son.getParent().getRight() == parent) {
+                son.getParent().setRight(son);
+            } else {
+                son.getParent().setLeft(son);
+            }
+        }
+        if (root == parent) {
+            root = son;
+        }
+        parent.updateSizeByChildren();
+        son.updateSizeByChildren();
+    }
+
+    /**
+     * private void doubleRotateLeftRight(N son, N parent)
+     * <p>
+     * perform a double rotation (left then right) on son and parent nodes
+     * Complexity: O(1)
+     */
+    private void doubleRotateLeftRight(N son, N parent) {
+        rotateLeft(son.getRight(), son);
+        rotateRight(parent.getLeft(), parent);
+    }
+
+    /**
+     * private void doubleRotateLeftRight(N son, N parent)
+     * <p>
+     * perform a double rotation (right then left) on son and parent nodes
+     * Complexity: O(1)
+     */
+    private void doubleRotateRightLeft(N son, N parent) {
+        rotateRight(son.getLeft(), son);
+        rotateLeft(parent.getRight(), parent);
+    }
+
+    /**
+     * private void replaceNode(N x, N y)
+     *
+     * Puts y in x's place in the tree, with x's sons, rank and size
+     * precondition: y is not in the tree
+     * Complexity: O(1)
+     */
+    private void replaceNode(N x, N y) {
+        takePlace(x, y);
+        if (isAugmented()) {
+            // the aggregates from y up still hold the item of x
+            updateSizeUpByChildren(y);
+        }
+    }
+
+    /**
+     * protected void relocateNode(N x, N y)
+     *
+     * Puts y, a copy of x with the same item and the same aggregate, in x's place in the tree
+     * and in the cached min and max, so nothing else has to change
+     * precondition: y is not in the tree
+     * Complexity: O(1)
+     */
+    protected void relocateNode(N x, N y) {
+        takePlace(x, y);
+        if (min == x) {
+            min = y;
+        }
+        if (max == x) {
+            max = y;
+        }
+    }
+
+    private void takePlace(N x, N y) {
+        y.setLeft(x.getLeft());
+        if (y.getLeft().isRealNode()) {
+            y.getLeft().setParent(y);
+        }
+        y.setRight(x.getRight());
+        if (y.getRight().isRealNode()) {
+            y.getRight().setParent(y);
+        }
+        y.setParent(x.getParent());
+        if (x.getParent() == null) {
+            root = y;
+        }
+        else if (x.getParent().getRight() == x) {
+            x.getParent().setRight(y);
+        }
+        else {
+            x.getParent().setLeft(y);
+        }
+        y.setHeight(x.getHeight());
+        y.setSize(x.getSize());
+    }
+
+    /**
+     * private int rebalanceAfterRemove(N node)
+     *
+     * node is the parent of the removed node.
+     * Rebalances by the rules of the engine and returns the number of re-balancing operations done.
+     * Complexity: O(log n)
+     */
+    private int rebalanceAfterRemove(N node) {
+        switch (engine) {
+            case WAVL:
+                return rebalanceWAVLDelete(node);
+            case RED_BLACK:
+                return rebalanceRedBlackDelete(node);
+            default:
+                return rebalanceAfterDelete(node);
+        }
+    }
+
+    /**
+     * private int rebalanceAfterDelete(N node)
+     *
+     * Perform rebalancing operations going up until the tree is balanced
+     * Returns the number of re-balancing operations done.
+     * the input node x is the node that might have
+     * illegal height difference with its sons
+     * Complexity: O(log n)
+     */
+    private int rebalanceAfterDelete(N node) {
+        int counter = 0;
+        while ((node != null) && (node.isRealNode())) {
+            int diffRight = getRightHeightDiff(node);
+            int diffLeft = getLeftHeightDiff(node);
+            if (isBalanced(diffRight, diffLeft)) {
+                return counter;
+            }
+            // case 1
+            if ((diffLeft == 2) && (diffRight == 2)) {
+                demote(node);
+                counter++;
+                node = node.getParent();
+                continue;
+            }
+            N son;
+            // cases 2,3,4 if the illegal height difference is on left side
+            if (diffLeft == 3) {
+                son = node.getRight();
+                int sonDiffRight = getRightHeightDiff(son);
+                int sonDiffLeft = getLeftHeightDiff(son);
+                // case 2
+                if ((sonDiffLeft == 1) && (sonDiffRight == 1)) {
+                    rotateLeft(son, node);
+                    demote(node);
+                    promote(son);
+                    return counter + 3;
+                }
+                // case 3
+                else if (sonDiffLeft == 2) {
+                    rotateLeft(son, node);
+                    doubleDemote(node);
+                    counter += 2;
+                }
+                // case 4
+                else {
+                    doubleRotateRightLeft(son, node);
+                    doubleDemote(node);
+                    promote(node.getParent());
+                    demote(son);
+                    counter += 5;
+                }
+            }
+            // cases 2,3,4 if the illegal height difference is on right side
+            else {
+                son = node.getLeft();
+                int sonDiffRight = getRightHeightDiff(son);
+                int sonDiffLeft = getLeftHeightDiff(son);
+                // case 2
+                if ((sonDiffLeft == 1) && (sonDiffRight == 1)) {
+                    rotateRight(son, node);
+                    demote(node);
+                    promote(son);
+                    return counter + 3;
+                }
+                // case 3
+                else if (sonDiffRight == 2) {
+                    rotateRight(son, node);
+                    demote(node);
+                    demote(node);
+                    counter += 3;
+                }
+                // case 4
+                else {
+                    doubleRotateLeftRight(son, node);
+                    doubleDemote(node);
+                    promote(node.getParent());
+                    demote(son);
+                    counter += 5;
+                }
+            }
+            node = node.getParent().getParent();
+        }
+        return counter;
+    }
+
+    /**
+     * private int rebalanceWAVLDelete(N node)
+     *
+     * Rebalancing after delete for the WAVL engine.
+     * A leaf that became (2,2) is demoted, then demotions go up while there is a 3-child,
+     * and the walk ends with at most one single or double rotation.
+     * Returns the number of re-balancing operations done.
+     * Complexity: O(log n) worst case, O(1) amortized
+     */
+    private int rebalanceWAVLDelete(N node) {
+        int counter = 0;
+        if ((node != null) && isLeaf(node) && (node.getHeight() == 1)) {
+            demote(node);
+            counter++;
+            node = node.getParent();
+        }
+        while (node != null) {
+            int diffRight = getRightHeightDiff(node);
+            int diffLeft = getLeftHeightDiff(node);
+            if ((diffLeft != 3) && (diffRight != 3)) {
+                return counter;
+            }
+            boolean leftIsShort = (diffLeft == 3);
+            N son = leftIsShort ? node.getRight() : node.getLeft();
+            // the sibling of the 3-child is a 2-child
+            if ((leftIsShort ? diffRight : diffLeft) == 2) {
+                demote(node);
+                counter++;
+                node = node.getParent();
+                continue;
+            }
+            int sonDiffRight = getRightHeightDiff(son);
+            int sonDiffLeft = getLeftHeightDiff(son);
+            // the sibling is a (2,2) node
+            if ((sonDiffRight == 2) && (sonDiffLeft == 2)) {
+                demote(node);
+                demote(son);
+                counter += 2;
+                node = node.getParent();
+                continue;
+            }
+            // the outer son of the sibling is a 1-child: single rotation
+            if ((leftIsShort ? sonDiffRight : sonDiffLeft) == 1) {
+                if (leftIsShort) {
+                    rotateLeft(son, node);
+                } else {
+                    rotateRight(son, node);
+                }
+                promote(son);
+                demote(node);
+                counter += 3;
+                if (isLeaf(node)) {
+                    demote(node);
+                    counter++;
+                }
+                return counter;
+            }
+            // double rotation
+            N grandson = leftIsShort ? son.getLeft() : son.getRight();
+            if (leftIsShort) {
+                doubleRotateRightLeft(son, node);
+            } else {
+                doubleRotateLeftRight(son, node);
+            }
+            promote(grandson);
+            promote(grandson);
+            demote(son);
+            doubleDemote(node);
+            return counter + 6;
+        }
+        return counter;
+    }
+
+    /**
+     * private int rebalanceRedBlackInsert(N node)
+     *
+     * Rebalancing for the red-black engine. node is a 0-child (red), the rank rule is broken
+     * only if its parent is a 0-child as well.
+     * A 0-child uncle means the grandparent is promoted (recolor) and the check moves up,
+     * otherwise a single or double rotation ends it.
+     * Returns the number of re-balancing operations done.
+     * Complexity: O(log n)
+     */
+    private int rebalanceRedBlackInsert(N node) {
+        int counter = 0;
+        while (true) {
+            N parent = node.getParent();
+            if ((parent == null) || (parent.getHeight() != node.getHeight())) {
+                return counter;
+            }
+            N grandparent = parent.getParent();
+            if ((grandparent == null) || (grandparent.getHeight() != parent.getHeight())) {
+                return counter;
+            }
+            boolean parentIsLeft = (grandparent.getLeft() == parent);
+            N uncle = parentIsLeft ? grandparent.getRight() : grandparent.getLeft();
+            if (uncle.getHeight() == grandparent.getHeight()) {
+                promote(grandparent);
+                counter++;
+                node = grandparent;
+                continue;
+            }
+            if (parentIsLeft == (parent.getLeft() == node)) {
+                if (parentIsLeft) {
+                    rotateRight(parent, grandparent);
+                } else {
+                    rotateLeft(parent, grandparent);
+                }
+                return counter + 1;
+            }
+            if (parentIsLeft) {
+                doubleRotateLeftRight(parent, grandparent);
+            } else {
+                doubleRotateRightLeft(parent, grandparent);
+            }
+            return counter + 2;
+        }
+    }
+
+    /**
+     * private int rebalanceRedBlackDelete(N node)
+     *
+     * Rebalancing after delete for the red-black engine, node might have a 2-child
+     * (the "double black" node).
+     * Returns the number of re-balancing operations done.
+     * Complexity: O(log n), at most three rotations
+     */
+    private int rebalanceRedBlackDelete(N node) {
+        int counter = 0;
+        while (node != null) {
+            int diffRight = getRightHeightDiff(node);
+            int diffLeft = getLeftHeightDiff(node);
+            if ((diffLeft != 2) && (diffRight != 2)) {
+                return counter;
+            }
+            boolean leftIsShort = (diffLeft == 2);
+            N son = leftIsShort ? node.getRight() : node.getLeft();
+            // the sibling is a 0-child: rotate it up, node stays the parent of the 2-child
+            if (son.getHeight() == node.getHeight()) {
+                if (leftIsShort) {
+                    rotateLeft(son, node);
+                } else {
+                    rotateRight(son, node);
+                }
+                counter++;
+                continue;
+            }
+            N outer = leftIsShort ? son.getRight() : son.getLeft();
+            N inner = leftIsShort ? son.getLeft() : son.getRight();
+            boolean outerIsZero = outer.getHeight() == son.getHeight();
+            boolean innerIsZero = inner.getHeight() == son.getHeight();
+            // both sons of the sibling are 1-children: demote and move up
+            if (!outerIsZero && !innerIsZero) {
+                demote(node);
+                counter++;
+                node = node.getParent();
+                continue;
+            }
+            // only the inner son is a 0-child: rotate it above the sibling
+            if (!outerIsZero) {
+                if (leftIsShort) {
+                    rotateRight(inner, son);
+                } else {
+                    rotateLeft(inner, son);
+                }
+                counter++;
+                continue;
+            }
+            if (leftIsShort) {
+                rotateLeft(son, node);
+            } else {
+                rotateRight(son, node);
+            }
+            promote(son);
+            demote(node);
+            return counter + 3;
+        }
+        return counter;
+    }
+
+    /**
+     * private boolean isLeaf(N node)
+     *
+     * Returns true if node has no real sons
+     * Complexity: O(1)
+     */
+    private boolean isLeaf(N node) {
+        return !node.getLeft().isRealNode() && !node.getRight().isRealNode();
+    }
+
+    /**
+     * private void deleteUnaryNode(N x)
+     * Deletes node x from tree
+     * precondition: x is unary node
+     * Complexity: O(1)
+     */
+    private void deleteUnaryNode(N x) {
+        if (x.getRight().isRealNode()) {
+            if (x.getParent() == null) {
+                root = x.getRight();
+                root.setParent(null);
+                return;
+            }
+            else {
+                x.getRight().setParent(x.getParent());
+                if (x.getParent().getRight() == x) {
+                    x.getParent().setRight(x.getRight());
+                }
+                else {
+                    x.getParent().setLeft(x.getRight());
+                }
+            }
+        }
+        else {
+            if (x.getParent() == null) {
+                root = x.getLeft();
+                root.setParent(null);
+                return;
+            }
+            else {
+                x.getLeft().setParent(x.getParent());
+                if (x.getParent().getRight() == x) {
+                    x.getParent().setRight(x.getLeft());
+                }
+                else {
+                    x.getParent().setLeft(x.getLeft());
+                }
+            }
+        }
+        updateSizeUpwards(x.getParent(), -1);
+    }
+
+    /**
+     * protected N successor(N node)
+     * Returns the successor of node is tree
+     * If node is the maximum in tree, returns null
+     * Complexity: O(log n)
+     */
+    protected N successor(N node) {
+        if (node.getRight().isRealNode()) {
+            return getMinNode(node.getRight());
+        }
+        N parent = node.getParent();
+        while ((parent != null) && (node == parent.getRight())) {
+            node = parent;
+            parent = node.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * protected N predecessor(N node)
+     * Returns the predecessor of node is tree
+     * If node is the minimum in tree, returns null
+     * Complexity: O(log n)
+     */
+    protected N predecessor(N node) {
+        if (node.getLeft().isRealNode()) {
+            return getMaxNode(node.getLeft());
+        }
+        N parent = node.getParent();
+        while ((parent != null) && (node == parent.getLeft())) {
+            node = parent;
+            parent = node.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * protected N getMinNode(N node)
+     * <p>
+     * Return the min node in mode's subtree
+     * Complexity O(log n)
+     */
+    protected N getMinNode(N node) {
+        while (node.getLeft().isRealNode()) {
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    /**
+     * private N getMaxnNode(N node)
+     * <p>
+     * Return the max node in mode's subtree
+     * Complexity O(log n)
+     */
+    protected N getMaxNode(N node) {
+        while (node.getRight().isRealNode()) {
+            node = node.getRight();
+        }
+        return node;
+    }
+
+    /**
+     * private void resetMinMax()
+     *
+     * Finds the min and max nodes again, used when the tree was built from raw subtrees
+     * Complexity: O(log n)
+     */
+    private void resetMinMax() {
+        if (empty()) {
+            min = null;
+            max = null;
+        }
+        else {
+            min = getMinNode(root);
+            max = getMaxNode(root);
+        }
+    }
+
+    /**
+     * private int joinLinked(N xx, RankBalancedTree<N> t)
+     *
+     * join for two trees of nodes
+     * Complexity: O(log n)
+     */
+    private int joinLinked(N xx, RankBalancedTree<N> t) {
+        if (root.isRealNode()) {
+            if (t.root.isRealNode()) {
+                if (lessThan(xx, root)) {
+                    return innerJoin(t, xx, this);
+                }
+                else {
+                    return innerJoin(this, xx, t);
+                }
+            }
+            else {
+                return joinToTree(xx);
+            }
+        }
+        else {
+            if (t.root.isRealNode()) {
+                root = t.root;
+                min = t.min;
+                max = t.max;
+                return joinToTree(xx);
+            }
+            else {
+                root = xx;
+                xx.setLeft(virtualNode);
+                xx.setRight(virtualNode);
+                xx.setParent(null);
+                xx.setHeight(0);
+                xx.updateSizeByChildren();
+                min = xx;
+                max = xx;
+                return 1;
+            }
+        }
+    }
+
+    /**
+     *  private int innerJoin(RankBalancedTree<N> t1, N x, RankBalancedTree<N> t2)
+     *
+     *  Join the trees to the node
+     *  Precondition: keys(t1) < x < keys(t2), trees not empty
+     *  Complexity: O(log n)
+     */
+    private int innerJoin(RankBalancedTree<N> t1, N x, RankBalancedTree<N> t2) {
+        min = t1.min;
+        max = t2.max;
+        // if x can be root
+        if (canBeJoinRoot(t1.root.getHeight(), t2.root.getHeight())) {
+            x.setParent(null);
+            x.setHeight(Math.max(t1.root.getHeight(), t2.root.getHeight()) + 1);
+            x.setLeft(t1.root);
+            t1.root.setParent(x);
+            x.setRight(t2.root);
+            t2.root.setParent(x);
+            root = x;
+            x.updateSizeByChildren();
+            return 1;
+        }
+        N a, b, c;
+        int counter = 0;
+        if (t1.root.getHeight() < t2.root.getHeight()) {
+            a = t1.root;
+            c = t2.root;
+            b = c.getLeft();
+            while (b.getHeight() > a.getHeight()) {
+                c = b;
+                b = b.getLeft();
+                counter++;
+            }
+            c.setLeft(x);
+            x.setLeft(a);
+            a.setParent(x);
+            x.setRight(b);
+            b.setParent(x);
+            x.setParent(c);
+            x.setHeight(Math.max(b.getHeight(), a.getHeight()) + 1);
+            updateSizeUpByChildren(x);
+            root = t2.root;
+            return counter + rebalanceAfterJoin(c, x);
+        }
+        else {
+            a = t2.root;
+            c = t1.root;
+            b = c.getRight();
+            while (b.getHeight() > a.getHeight()) {
+                c = b;
+                b = b.getRight();
+                counter++;
+            }
+            c.setRight(x);
+            x.setRight(a);
+            a.setParent(x);
+            x.setLeft(b);
+            b.setParent(x);
+            x.setParent(c);
+            x.setHeight(Math.max(b.getHeight(), a.getHeight()) + 1);
+            updateSizeUpByChildren(x);
+            root = t1.root;
+            return counter + rebalanceAfterJoin(c, x);
+        }
+    }
+
+    /**
+     * private boolean canBeJoinRoot(int rank1, int rank2)
+     * Returns true if a node joining trees with these root ranks can be their common root
+     * Complexity: O(1)
+     */
+    private boolean canBeJoinRoot(int rank1, int rank2) {
+        if (engine == AVLTree.Engine.RED_BLACK) {
+            return rank1 == rank2;
+        }
+        return Math.abs(rank1 - rank2) < 2;
+    }
+
+    /**
+     * private int rebalanceAfterJoin(N c, N x)
+     * x was hung under c with rank one above its sons
+     * Complexity: O(log n)
+     */
+    private int rebalanceAfterJoin(N c, N x) {
+        if (engine == AVLTree.Engine.RED_BLACK) {
+            return rebalanceRedBlackInsert(x);
+        }
+        return rebalanceAfterInsert(c, x);
+    }
+
+    /**
+     * private int joinToTree(N x)
+     * Adds node x to tree
+     * Complexity: O(log n)
+     */
+    private int joinToTree(N x) {
+        x.setLeft(virtualNode);
+        x.setRight(virtualNode);
+        x.setHeight(0);
+        N parent;
+        if (lessThan(x, root)) {
+            parent = getMinNode(root);
+            parent.setLeft(x);
+            min = x;
+        }
+        else {
+            parent = getMaxNode(root);
+            parent.setRight(x);
+            max = x;
+        }
+        x.setParent(parent);
+        x.updateSizeByChildren();
+        updateSizeUpwards(parent, 1);
+        return 1 + rebalanceAfterAttach(x);
+    }
+
+    /**
+     * public interface RankNode
+     * <p>
+     * What the rebalancing needs from a node: sons, parent, rank (kept in the height field,
+     * -1 for a virtual node) and subtree size.
+     */
+    public interface RankNode<N extends RankNode<N>> {
+        public N getLeft(); // Returns left child.
+        public void setLeft(N node); // Sets left child.
+        public N getRight(); // Returns right child.
+        public void setRight(N node); // Sets right child.
+        public N getParent(); // Returns the parent, if there is no parent return null.
+        public void setParent(N node); // Sets parent.
+        public boolean isRealNode(); // Returns True if this is a non-virtual node.
+        public int getHeight(); // Returns the rank of the node (-1 for virtual nodes).
+        public void setHeight(int height); // Sets the rank of the node.
+        public int getSize(); // Returns the number of real nodes in the subtree.
+        public void setSize(int k); // Sets the size of the subtree.
+        public void updateSizeByChildren(); // Sets the size from the sons' sizes.
+    }
+
+}
@@ -1,3 +1,10 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 public class Tests {
 
     //0
@@ -316,4 +323,865 @@ public class Tests {
         return true;
     }
 
+    //16
+    public boolean engines() {
+        for (AVLTree.Engine engine : AVLTree.Engine.values()) {
+            AVLTree tree = new AVLTree(engine);
+            java.util.Random random = new java.util.Random(engine.ordinal());
+            java.util.TreeSet<Integer> expected = new java.util.TreeSet<>();
+            for (int i = 0; i < 3000; i++) {
+                int k = random.nextInt(500);
+                if (random.nextInt(3) > 0) {
+                    if ((tree.insert(k, "" + k) == -1) != expected.contains(k)) {
+                        return false;
+                    }
+                    expected.add(k);
+                } else {
+                    if ((tree.delete(k) == -1) == expected.contains(k)) {
+                        return false;
+                    }
+                    expected.remove(k);
+                }
+                if (!checkRanks((AVLTree.IAVLNodeOur) tree.getRoot(), engine) || tree.size() != expected.size()) {
+                    return false;
+                }
+            }
+            int[] keys = tree.keysToArray();
+            int i = 0;
+            for (int k : expected) {
+                if (keys[i++] != k) {
+                    return false;
+                }
+            }
+            AVLTree[] parts = tree.split(keys[keys.length / 2]);
+            if (!checkRanks((AVLTree.IAVLNodeOur) parts[0].getRoot(), engine)
+                    || !checkRanks((AVLTree.IAVLNodeOur) parts[1].getRoot(), engine)) {
+                return false;
+            }
+            parts[0].join(new AVLTree.AVLNode(keys[keys.length / 2], ""), parts[1]);
+            if (!checkRanks((AVLTree.IAVLNodeOur) parts[0].getRoot(), engine) || parts[0].size() != keys.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkRanks(RankBalancedTree.RankNode<?> node, AVLTree.Engine engine) {
+        if (!node.isRealNode()) {
+            return true;
+        }
+        int diffLeft = node.getHeight() - node.getLeft().getHeight();
+        int diffRight = node.getHeight() - node.getRight().getHeight();
+        switch (engine) {
+            case AVL:
+                if (diffLeft < 1 || diffRight < 1 || diffLeft + diffRight > 3) {
+                    return false;
+                }
+                break;
+            case WAVL:
+                if (diffLeft < 1 || diffRight < 1 || diffLeft > 2 || diffRight > 2) {
+                    return false;
+                }
+                if (!node.getLeft().isRealNode() && !node.getRight().isRealNode() && node.getHeight() != 0) {
+                    return false;
+                }
+                break;
+            default:
+                if (diffLeft < 0 || diffRight < 0 || diffLeft > 1 || diffRight > 1) {
+                    return false;
+                }
+                if (node.getParent() != null && node.getParent().getHeight() == node.getHeight()
+                        && (diffLeft == 0 || diffRight == 0)) {
+                    return false;
+                }
+        }
+        return checkRanks(node.getLeft(), engine) && checkRanks(node.getRight(), engine);
+    }
+
+    //17
+    public boolean bPlusTree() {
+        BPlusTree tree = new BPlusTree();
+        if (!tree.empty() || tree.min() != null || tree.search(1) != null) {
+            return false;
+        }
+        for (int i = 0; i < 10000; i++) {
+            if (tree.insert((i * 7919) % 10000, "num" + ((i * 7919) % 10000)) == -1) {
+                return false;
+            }
+        }
+        if (tree.insert(5, "again") != -1 || tree.size() != 10000) {
+            return false;
+        }
+        for (int i = 0; i < 10000; i += 3) {
+            if (tree.delete(i) == -1) {
+                return false;
+            }
+        }
+        if (tree.delete(3) != -1 || !tree.min().equals("num1") || !tree.max().equals("num9998")) {
+            return false;
+        }
+        int[] keys = tree.keysToArray();
+        String[] info = tree.infoToArray();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] % 3 == 0 || (i > 0 && keys[i] <= keys[i - 1]) || !info[i].equals("num" + keys[i])) {
+                return false;
+            }
+        }
+        BPlusTree[] parts = tree.split(5000);
+        if (parts[0].size() + parts[1].size() != keys.length - 1 || !parts[0].max().equals("num4999")
+                || !parts[1].min().equals("num5002") || parts[1].search(5000) != null) {
+            return false;
+        }
+        parts[1].join(new AVLTree.AVLNode(5000, "num5000"), parts[0]);
+        return parts[1].size() == keys.length && parts[1].search(5000).equals("num5000")
+                && parts[1].search(4999).equals("num4999") && parts[1].min().equals("num1");
+    }
+
+    //18
+    public boolean smallTree() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 99; i >= 0; i--) {
+            avlTree.insert(i, "num" + i);
+            if (!avlTree.min().equals("num" + i) || !avlTree.max().equals("num99")) {
+                return false;
+            }
+        }
+        for (int i = 0; i < 90; i++) {
+            avlTree.delete(i);
+        }
+        if (avlTree.size() != 10 || !avlTree.min().equals("num90") || avlTree.search(89) != null) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(95);
+        if (parts[0].size() != 5 || parts[1].size() != 4 || !parts[1].min().equals("num96")) {
+            return false;
+        }
+        if (!checkBalanceOfTree(parts[0].getRoot())) {
+            return false;
+        }
+        parts[1].join(new AVLTree.AVLNode(95, "num95"), parts[0]);
+        int[] keys = parts[1].keysToArray();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 90 + i) {
+                return false;
+            }
+        }
+        return keys.length == 10 && parts[1].search(95).equals("num95");
+    }
+
+    //19
+    public boolean lazySizes() {
+        AVLTree avlTree = new AVLTree();
+        avlTree.setLazySizes(true);
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert((i * 37) % 1000, "num" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            avlTree.delete(i);
+        }
+        if (avlTree.size() != 500 || avlTree.keysToArray().length != 500) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(501);
+        if (parts[0].size() != 250 || parts[1].size() != 249) {
+            return false;
+        }
+        parts[1].insert(2000, "num2000");
+        parts[1].setLazySizes(false);
+        return ((AVLTree.IAVLNodeOur) parts[1].getRoot()).getSize() == 250 && parts[1].size() == 250;
+    }
+
+
+    //20
+    public boolean longAndObjKeyTrees() {
+        for (AVLTree.Engine engine : AVLTree.Engine.values()) {
+            LongAVLTree<Integer> longTree = new LongAVLTree<>(engine);
+            ObjKeyAVLTree<String, Integer> objTree = new ObjKeyAVLTree<>(Comparator.reverseOrder(), engine);
+            for (int i = 0; i < 1000; i++) {
+                long k = ((i * 37L) % 1000) << 33;
+                longTree.insert(k, i);
+                objTree.insert("key" + (1000 + (i * 37) % 1000), i);
+            }
+            if (longTree.insert(0L, 5) != -1 || objTree.insert("key1000", 5) != -1) {
+                return false;
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                longTree.delete((long) i << 33);
+                objTree.delete("key" + (1000 + i));
+            }
+            long[] keys = longTree.keysToArray();
+            String[] objKeys = objTree.keysToArray(String[]::new);
+            if (keys.length != 500 || objKeys.length != 500 || keys[0] != 1L << 33 || !objKeys[0].equals("key1999")) {
+                return false;
+            }
+            if (!checkRanks(longTree.getRoot(), engine) || !checkRanks(objTree.getRoot(), engine)) {
+                return false;
+            }
+            LongAVLTree<Integer>[] parts = longTree.split(501L << 33);
+            if (parts[0].size() != 250 || parts[1].size() != 249 || parts[1].search(501L << 33) != null) {
+                return false;
+            }
+            parts[0].join(new LongAVLTree.Node<>(501L << 33, 501), parts[1]);
+            Integer[] info = parts[0].infoToArray(Integer[]::new);
+            if (info.length != 500 || !checkRanks(parts[0].getRoot(), engine)) {
+                return false;
+            }
+            ObjKeyAVLTree<String, Integer>[] objParts = objTree.split("key1501");
+            if (objParts[0].size() != 249 || objParts[1].size() != 250 || !objParts[0].keysToArray(String[]::new)[0].equals("key1999")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //21
+    public boolean valueArena() {
+        AVLTree avlTree = new AVLTree();
+        avlTree.setValueArena(true, true);
+        for (int i = 0; i < 10000; i++) {
+            avlTree.insert(i, "value number " + (i % 10));
+        }
+        long dedupBytes = avlTree.valueMemoryBytes();
+        if (dedupBytes > 1024 + 4 * 64 || !avlTree.search(17).equals("value number 7")) {
+            return false;
+        }
+        avlTree.setValueArena(true, false);
+        for (int i = 10000; i < 20000; i++) {
+            avlTree.insert(i, "unique value " + i + " אבג");
+        }
+        long fullBytes = avlTree.valueMemoryBytes();
+        for (int i = 0; i < 19900; i++) {
+            avlTree.delete(i);
+        }
+        CharSequence view = avlTree.searchView(19950);
+        if (avlTree.valueMemoryBytes() * 10 > fullBytes || !view.toString().equals("unique value 19950 אבג")) {
+            return false;
+        }
+        String[] info = avlTree.infoToArray();
+        if (info.length != 100 || !info[99].equals("unique value 19999 אבג") || view.length() != 22) {
+            return false;
+        }
+        // the records of a deleted range are garbage at once, so the arena is compacted too
+        for (int i = 20000; i < 40000; i++) {
+            avlTree.insert(i, "unique value " + i + " אבג");
+        }
+        long rangeBytes = avlTree.valueMemoryBytes();
+        return avlTree.deleteRange(20000, 39899) == 19900 && avlTree.valueMemoryBytes() * 10 <= rangeBytes
+                && avlTree.search(39950).equals("unique value 39950 אבג") && avlTree.size() == 200;
+    }
+
+    //22
+    public boolean compactTree() {
+        CompactAVLTree tree = new CompactAVLTree();
+        for (int i = 0; i < 1000; i++) {
+            tree.insert((i * 37) % 1000, "num" + ((i * 37) % 1000));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            tree.delete(i);
+        }
+        if (tree.size() != 500 || !tree.min().equals("num1") || !tree.max().equals("num999")) {
+            return false;
+        }
+        if (tree.getRoot().getHeight() > 1.45 * Math.log(500) / Math.log(2)) {
+            return false;
+        }
+        CompactAVLTree[] parts = tree.split(500);
+        if (parts[0].size() != 250 || parts[1].size() != 250 || !parts[1].min().equals("num501")) {
+            return false;
+        }
+        parts[0].join(new CompactAVLTree.Node(500, "num500"), parts[1]);
+        int[] keys = parts[0].keysToArray();
+        return keys.length == 501 && keys[250] == 500 && parts[0].search(500).equals("num500");
+    }
+
+    //23
+    public boolean parallelArrays() {
+        AVLTree avlTree = new AVLTree();
+        avlTree.setLazySizes(true);
+        for (int i = 0; i < 50000; i++) {
+            avlTree.insert((i * 7919) % 50000, "num" + ((i * 7919) % 50000));
+        }
+        int[] keys = avlTree.keysToArrayParallel();
+        String[] info = avlTree.infoToArrayParallel();
+        int[] entryKeys = new int[avlTree.size()];
+        String[] entryInfo = new String[avlTree.size()];
+        if (avlTree.entriesToArrays(entryKeys, entryInfo) != 50000
+                || !Arrays.equals(keys, avlTree.keysToArray()) || !Arrays.equals(info, avlTree.infoToArray())) {
+            return false;
+        }
+        return Arrays.equals(keys, entryKeys) && Arrays.equals(info, entryInfo)
+                && new AVLTree().keysToArrayParallel().length == 0;
+    }
+
+    //24
+    public boolean joinChains() {
+        for (AVLTree.Engine engine : AVLTree.Engine.values()) {
+            // grow one tree by joining single nodes on alternating sides, always on the spine ends
+            AVLTree tree = new AVLTree(engine);
+            for (int i = 0; i < 3000; i++) {
+                int key = (i % 2 == 0) ? 100000 + i : 100000 - i;
+                tree.join(new AVLTree.AVLNode(key, "num" + key), new AVLTree(engine));
+            }
+            if (tree.size() != 3000 || !checkRanks((AVLTree.IAVLNodeOur) tree.getRoot(), engine)) {
+                return false;
+            }
+            // join trees of very different ranks: tiny trees on the tall one, then the tall one on a tiny tree
+            for (int i = 1; i <= 200; i++) {
+                AVLTree tiny = new AVLTree(engine);
+                tiny.insert(200000 + 10 * i + 1, "tiny");
+                tiny.insert(200000 + 10 * i + 2, "tiny");
+                tree.join(new AVLTree.AVLNode(200000 + 10 * i, "num"), tiny);
+                AVLTree low = new AVLTree(engine);
+                low.insert(-10 * i - 1, "low");
+                low.join(new AVLTree.AVLNode(-10 * i, "num"), tree);
+                tree = low;
+                if (!checkRanks((AVLTree.IAVLNodeOur) tree.getRoot(), engine)) {
+                    return false;
+                }
+            }
+            int[] keys = tree.keysToArray();
+            if (keys.length != 3000 + 200 * 5 || keys.length != tree.size()) {
+                return false;
+            }
+            for (int i = 1; i < keys.length; i++) {
+                if (keys[i - 1] >= keys[i]) {
+                    return false;
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            tree.print(new PrintStream(out));
+            if (out.size() == 0 || tree.search(200000 + 10 * 200 + 2) == null || tree.search(-2001) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //25
+    public boolean multiWaySplit() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert(2 * i, "num" + (2 * i));
+        }
+        AVLTree[] parts = avlTree.splitAt(new int[] {-5, 101, 500, 1501});
+        if (parts.length != 5 || !parts[0].empty() || parts[1].size() != 51 || parts[2].size() != 199
+                || parts[3].size() != 501 || parts[4].size() != 249 || !parts[3].min().equals("num500")) {
+            return false;
+        }
+        AVLTree whole = parts[0];
+        for (int i = 1; i < parts.length; i++) {
+            whole.concat(parts[i]);
+        }
+        parts = whole.splitInto(7);
+        for (AVLTree part : parts) {
+            if (part.size() < 142 || part.size() > 143) {
+                return false;
+            }
+        }
+        for (int i = 1; i < parts.length; i++) {
+            parts[0].concat(parts[i]);
+        }
+        int[] keys = parts[0].keysToArray();
+        return keys.length == 1000 && keys[999] == 1998 && parts[0].search(1000).equals("num1000");
+    }
+
+    //26
+    public boolean rangeDelete() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.WAVL);
+        for (int i = 0; i < 10000; i++) {
+            avlTree.insert(i, "num" + i);
+        }
+        if (avlTree.deleteRange(-100, 4999) != 5000 || avlTree.size() != 5000 || !avlTree.min().equals("num5000")) {
+            return false;
+        }
+        AVLTree span = avlTree.extractRange(7000, 7999);
+        if (span.size() != 1000 || !span.min().equals("num7000") || !span.max().equals("num7999")) {
+            return false;
+        }
+        if (avlTree.size() != 4000 || !avlTree.max().equals("num9999") || avlTree.search(7500) != null
+                || !checkRanks((AVLTree.IAVLNodeOur) avlTree.getRoot(), AVLTree.Engine.WAVL)) {
+            return false;
+        }
+        return avlTree.deleteRange(9000, Integer.MAX_VALUE) == 1000 && avlTree.max().equals("num8999")
+                && avlTree.deleteRange(10, 5) == 0 && avlTree.keysToArray().length == 3000;
+    }
+
+    //27
+    public boolean rangeAggregate() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.RED_BLACK);
+        avlTree.setAggregate(new AVLTree.Aggregate<Long>() {
+            public Long of(int key, String info) {
+                return Long.parseLong(info);
+            }
+            public Long combine(Long left, Long right) {
+                return left + right;
+            }
+            public Long identity() {
+                return 0L;
+            }
+        });
+        for (int i = 1; i <= 1000; i++) {
+            avlTree.insert(i, Integer.toString(i));
+        }
+        for (int i = 2; i <= 1000; i += 2) {
+            avlTree.delete(i);
+        }
+        long odd = avlTree.aggregate(1, 100);
+        long all = avlTree.aggregate(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (odd != 2500 || all != 250000 || (long) avlTree.aggregate(7, 3) != 0) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(501);
+        if ((long) parts[0].aggregate(0, 2000) != 62500 || (long) parts[1].aggregate(0, 2000) != 250000 - 62500 - 501) {
+            return false;
+        }
+        parts[0].join(new AVLTree.AVLNode(501, "501"), parts[1]);
+        return (long) parts[0].aggregate(400, 600) == 50000 && (long) parts[0].aggregate(0, 2000) == 250000;
+    }
+
+    //28
+    public boolean intervalQueries() {
+        IntervalTree intervals = new IntervalTree(AVLTree.Engine.WAVL);
+        for (int i = 0; i < 1000; i++) {
+            intervals.insert(10 * i, 10 * i + 15, "iv" + i);
+        }
+        if (intervals.insert(0, 15, "again") != -1 || !intervals.search(50, 65).equals("iv5")) {
+            return false;
+        }
+        List<IntervalTree.Node> hits = intervals.stabbing(52);
+        if (hits.size() != 2 || hits.get(0).getStart() != 40 || hits.get(1).getStart() != 50) {
+            return false;
+        }
+        intervals.delete(40, 55);
+        intervals.insert(-100, 100000, "wide");
+        hits = intervals.overlapping(52, 71);
+        if (hits.size() != 4 || !hits.get(0).getValue().equals("wide") || hits.get(3).getStart() != 70) {
+            return false;
+        }
+        int[] starts = {0, 0, 5, 20};
+        int[] ends = {3, 30, 6, 25};
+        IntervalTree built = IntervalTree.fromSorted(starts, ends, new String[] {"a", "b", "c", "d"}, AVLTree.Engine.AVL);
+        if (built.size() != 4 || built.getRoot().getMaxEnd() != 30 || built.stabbing(21).size() != 2
+                || built.overlapping(7, 19).size() != 1 || !built.overlapping(31, 40).isEmpty()) {
+            return false;
+        }
+        // the biggest ends would be stale in the lazy sizes mode, so it is refused
+        IntervalTree lazy = new IntervalTree();
+        try {
+            lazy.setLazySizes(true);
+            return false;
+        } catch (IllegalStateException e) {
+            for (int i = 0; i < 100; i++) {
+                lazy.insert(i * 10, i * 10 + 1, "iv" + i);
+            }
+            lazy.insert(5, 1000, "wide");
+            return lazy.overlapping(900, 950).size() == 7;
+        }
+    }
+
+    //29
+    public boolean pollMinMax() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.RED_BLACK);
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert(i, "num" + i);
+        }
+        avlTree.delete(0);
+        avlTree.delete(999);
+        if (!avlTree.min().equals("num1") || !avlTree.max().equals("num998")) {
+            return false;
+        }
+        for (int i = 1; i < 500; i++) {
+            if (avlTree.peekMinKey() != i || !avlTree.pollMin().equals("num" + i)) {
+                return false;
+            }
+        }
+        for (int i = 998; i >= 520; i--) {
+            if (avlTree.peekMaxKey() != i || !avlTree.pollMax().equals("num" + i)) {
+                return false;
+            }
+        }
+        if (avlTree.size() != 20 || !avlTree.min().equals("num500") || !avlTree.max().equals("num519")) {
+            return false;
+        }
+        for (int i = 0; i < 20; i++) {
+            avlTree.pollMax();
+        }
+        try {
+            avlTree.peekMinKey();
+            return false;
+        } catch (NoSuchElementException e) {
+            return avlTree.empty() && avlTree.pollMin() == null;
+        }
+    }
+
+    //30
+    public boolean batchedSearch() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 0; i < 300000; i++) {
+            avlTree.insert(2 * i, "num" + i);
+        }
+        int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i * 7919) % 600001;
+        }
+        keys[10] = keys[11];
+        keys[12] = Integer.MIN_VALUE;
+        keys[13] = Integer.MAX_VALUE;
+        String[] out = new String[keys.length];
+        int found = avlTree.searchAll(keys, out);
+        int expected = 0;
+        for (int i = 0; i < keys.length; i++) {
+            String info = avlTree.search(keys[i]);
+            if ((info == null) ? (out[i] != null) : !info.equals(out[i])) {
+                return false;
+            }
+            expected += (info != null) ? 1 : 0;
+        }
+        return found == expected && out[0].equals("num0") && out[12] == null;
+    }
+
+    //31
+    public boolean frozenSnapshot() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert(3 * i, "num" + i);
+        }
+        FrozenAVLTree frozen = avlTree.freeze();
+        avlTree.delete(30);
+        if (frozen.size() != 1000 || !frozen.search(30).equals("num10") || frozen.search(31) != null) {
+            return false;
+        }
+        if (frozen.rank(0) != 0 || frozen.rank(31) != 11 || frozen.rank(5000) != 1000) {
+            return false;
+        }
+        if (frozen.floorKey(31) != 30 || frozen.ceilingKey(31) != 33 || frozen.floorKey(5000) != 2997) {
+            return false;
+        }
+        try {
+            frozen.ceilingKey(2998);
+            return false;
+        } catch (NoSuchElementException e) {
+            int[] keys = frozen.keysToArray();
+            return keys.length == 1000 && keys[999] == 2997 && frozen.infoToArray()[10].equals("num10")
+                    && new AVLTree().freeze().search(0) == null;
+        }
+    }
+
+    //32
+    public boolean keyBlocks() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 0; i < 5000; i++) {
+            avlTree.insert(2 * i, "num" + i);
+        }
+        KeyBlocks blocks = avlTree.keyBlocks();
+        KeyBlocks scalar = new KeyBlocks(avlTree.keysToArray(), false);
+        for (int k = -3; k < 10003; k += 7) {
+            int expected = Math.min(5000, Math.max(0, (k + 1) / 2));
+            if (blocks.rank(k) != expected || scalar.rank(k) != expected
+                    || blocks.contains(k) != (k >= 0 && k < 10000 && k % 2 == 0)) {
+                return false;
+            }
+        }
+        KeyBlocks empty = new KeyBlocks(new int[0]);
+        return blocks.countRange(10, 19) == 5 && scalar.countRange(Integer.MIN_VALUE, Integer.MAX_VALUE) == 5000
+                && blocks.countRange(5, 4) == 0 && blocks.keysToArray()[4999] == 9998
+                && empty.rank(7) == 0 && !empty.contains(0) && !scalar.isVectorized();
+    }
+
+    //33
+    public boolean hashIndex() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.WAVL);
+        avlTree.setHashIndex(true);
+        for (int i = 0; i < 2000; i++) {
+            avlTree.insert(i, "num" + i);
+        }
+        if (avlTree.insert(5, "again") != -1 || avlTree.delete(5) < 0 || avlTree.search(5) != null
+                || !avlTree.search(6).equals("num6") || avlTree.indexMemoryBytes() == 0) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(1500);
+        if (parts[0].search(1500) != null || parts[1].search(1499) != null || !parts[1].search(1501).equals("num1501")
+                || !parts[0].search(1499).equals("num1499")) {
+            return false;
+        }
+        parts[0].join(new AVLTree.AVLNode(1500, "back"), parts[1]);
+        if (!parts[0].search(1500).equals("back") || !parts[0].search(1999).equals("num1999") || parts[0].size() != 1999) {
+            return false;
+        }
+        parts[0].deleteRange(10, 1989);
+        if (parts[0].search(100) != null || !parts[0].search(1990).equals("num1990") || parts[0].indexMemoryBytes() == 0) {
+            return false;
+        }
+        parts[0].setHashIndex(false);
+        return parts[0].indexMemoryBytes() == 0 && parts[0].search(9).equals("num9") && parts[0].size() == 19;
+    }
+
+    //34
+    public boolean bloomFilter() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.RED_BLACK);
+        avlTree.setBloomFilter(true);
+        for (int i = 0; i < 5000; i++) {
+            avlTree.insert(2 * i, "num" + i);
+        }
+        for (int i = 1; i < 10000; i += 2) {
+            if (avlTree.search(i) != null) {
+                return false;
+            }
+        }
+        KeyFilter filter = avlTree.bloomFilter();
+        if (filter.negatives() + filter.falsePositives() != 5000 || filter.falsePositiveRate() > 0.1
+                || filter.memoryBytes() == 0) {
+            return false;
+        }
+        for (int i = 0; i < 4000; i++) {
+            avlTree.delete(2 * i);
+        }
+        if (avlTree.search(0) != null || !avlTree.search(8000).equals("num4000") || avlTree.bloomFilter().rebuilds() < 2) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(9000);
+        parts[0].join(new AVLTree.AVLNode(9000, "back"), parts[1]);
+        parts[0].insert(1, "one");
+        return parts[0].search(9000).equals("back") && parts[0].search(1).equals("one")
+                && parts[0].search(8001) == null && parts[0].search(9998).equals("num4999");
+    }
+
+    //35
+    public boolean hotKeyCache() {
+        AVLTree avlTree = new AVLTree();
+        HotKeyCache cache = new HotKeyCache(avlTree, 8);
+        for (int i = 0; i < 1000; i++) {
+            cache.insert(i, "num" + i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                if (!cache.search(i).equals("num" + i)) {
+                    return false;
+                }
+            }
+        }
+        // a scan of cold keys does not push the hot ones out
+        for (int i = 100; i < 200; i++) {
+            cache.search(i);
+        }
+        long hits = cache.hits();
+        for (int i = 0; i < 5; i++) {
+            cache.search(i);
+        }
+        if (cache.hits() != hits + 5 || cache.size() > 8 || cache.hitRate() <= 0) {
+            return false;
+        }
+        cache.delete(3);
+        cache.insert(3, "new3");
+        if (!cache.search(3).equals("new3") || cache.search(1000) != null) {
+            return false;
+        }
+        HotKeyCache[] parts = cache.split(2);
+        if (parts[0].search(2) != null || parts[1].search(2) != null || !parts[0].search(1).equals("num1")
+                || !parts[1].search(4).equals("num4")) {
+            return false;
+        }
+        parts[0].join(new AVLTree.AVLNode(2, "two"), parts[1]);
+        return parts[0].search(2).equals("two") && parts[0].search(3).equals("new3") && parts[0].getTree().size() == 1000;
+    }
+
+    //36
+    public boolean evictingTree() {
+        EvictingAVLTree lowest = new EvictingAVLTree(100, EvictingAVLTree.Policy.LOWEST_KEY);
+        for (int i = 1000; i > 0; i--) {
+            lowest.insert(i, "num" + i);
+        }
+        if (lowest.size() != 100 || lowest.search(900) != null || !lowest.search(901).equals("num901")
+                || lowest.evictions() != 900 || !lowest.getTree().min().equals("num901")) {
+            return false;
+        }
+        EvictingAVLTree oldest = new EvictingAVLTree(100, EvictingAVLTree.Policy.INSERTION_AGE);
+        for (int i = 1000; i > 0; i--) {
+            oldest.insert(i, "num" + i);
+        }
+        oldest.delete(50);
+        oldest.insert(5000, "new");
+        if (oldest.size() != 100 || oldest.search(101) != null || !oldest.search(1).equals("num1")
+                || !oldest.search(5000).equals("new") || !oldest.search(100).equals("num100")) {
+            return false;
+        }
+        if (oldest.insert(6000, "newer") != 1 || oldest.search(100) != null || !oldest.search(99).equals("num99")) {
+            return false;
+        }
+        long[] now = {0};
+        EvictingAVLTree timed = new EvictingAVLTree(1000, EvictingAVLTree.Policy.INSERTION_AGE, 100, () -> now[0]);
+        for (int i = 0; i < 500; i++) {
+            now[0] = i;
+            timed.insert(i, "num" + i);
+        }
+        now[0] = 550;
+        if (timed.search(450) != null || !timed.search(451).equals("num451") || timed.size() != 49) {
+            return false;
+        }
+        return timed.expirations() == 451 && timed.getTree().size() == 49;
+    }
+
+    //37
+    public boolean lazyDelete() {
+        AVLTree avlTree = new AVLTree(AVLTree.Engine.WAVL);
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert(i, "num" + i);
+        }
+        avlTree.setLazyDelete(true);
+        for (int i = 0; i < 200; i++) {
+            if (avlTree.delete(i) != 0) {
+                return false;
+            }
+        }
+        if (avlTree.deadCount() != 200 || avlTree.size() != 800 || avlTree.search(5) != null
+                || avlTree.delete(5) != -1 || !avlTree.min().equals("num200") || avlTree.keysToArray()[0] != 200) {
+            return false;
+        }
+        avlTree.insert(5, "new5");
+        if (avlTree.deadCount() != 199 || !avlTree.min().equals("new5") || !avlTree.search(5).equals("new5")) {
+            return false;
+        }
+        for (int i = 300; i < 400; i++) {
+            avlTree.delete(i);
+        }
+        if (avlTree.deadCount() != 48 || avlTree.size() != 701 || avlTree.infoToArray().length != 701) {
+            return false;
+        }
+        AVLTree[] parts = avlTree.split(500);
+        if (parts[0].deadCount() != 0 || parts[0].size() != 201 || parts[1].size() != 499) {
+            return false;
+        }
+        avlTree = parts[0];
+        avlTree.setLazyDelete(false);
+        if (avlTree.delete(5) < 0 || avlTree.search(5) != null || avlTree.deadCount() != 0) {
+            return false;
+        }
+        // the purge before the split shrinks the tree into the small form
+        AVLTree shrinking = new AVLTree();
+        shrinking.setLazyDelete(true);
+        for (int i = 0; i < 70; i++) {
+            shrinking.insert(i, "num" + i);
+        }
+        for (int i = 0; i < 30; i++) {
+            shrinking.pollMin();
+        }
+        for (int i = 30; i < 39; i++) {
+            shrinking.delete(i);
+        }
+        if (shrinking.size() != 31 || shrinking.deadCount() != 9) {
+            return false;
+        }
+        AVLTree[] halves = shrinking.split(50);
+        if (halves[0].size() != 11 || halves[1].size() != 19 || !halves[1].min().equals("num51")) {
+            return false;
+        }
+        return halves[0].extractRange(40, 44).size() == 5 && halves[0].size() == 6;
+    }
+
+    //38
+    public boolean bufferedInsert() {
+        AVLTree avlTree = new AVLTree();
+        for (int i = 0; i < 1000; i += 2) {
+            avlTree.insert(i, "num" + i);
+        }
+        BufferedAVLTree buffered = new BufferedAVLTree(avlTree, 100);
+        for (int i = 1; i < 200; i += 2) {
+            if (buffered.insert(i, "num" + i) != 0) {
+                return false;
+            }
+        }
+        if (buffered.insert(51, "again") != -1 || buffered.buffered() != 100 || avlTree.size() != 500
+                || !buffered.search(51).equals("num51") || !buffered.search(50).equals("num50")) {
+            return false;
+        }
+        buffered.insert(-1, "num-1");
+        buffered.insert(4, "new4");
+        if (buffered.flushes() != 1 || avlTree.size() != 600 || !buffered.min().equals("num-1")
+                || !buffered.search(4).equals("num4") || buffered.delete(-1) != 0 || !buffered.min().equals("num0")) {
+            return false;
+        }
+        if (buffered.size() != 600 || buffered.buffered() != 0 || !buffered.search(4).equals("num4")) {
+            return false;
+        }
+        int[] keys = buffered.keysToArray();
+        for (int i = 0; i < 200; i++) {
+            if (keys[i] != i) {
+                return false;
+            }
+        }
+        return keys[200] == 200 && keys[201] == 202 && buffered.max().equals("num998");
+    }
+
+    //39
+    public boolean combiningTree() throws InterruptedException {
+        CombiningAVLTree combining = new CombiningAVLTree(new AVLTree(), 2);
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = id; i < 4000; i += threads.length) {
+                    if (combining.insert(i, "num" + i) < 0 || !combining.search(i).equals("num" + i)) {
+                        failed[id] = true;
+                    }
+                }
+                for (int i = id; i < 2000; i += threads.length) {
+                    if (combining.delete(i) < 0 || combining.delete(i) != -1) {
+                        failed[id] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean f : failed) {
+            if (f) {
+                return false;
+            }
+        }
+        if (combining.size() != 2000 || combining.search(1999) != null || !combining.search(2000).equals("num2000")
+                || !combining.getTree().min().equals("num2000") || combining.combines() == 0) {
+            return false;
+        }
+        // the one slot goes to the next thread once its first thread ended, so its operations are combined
+        CombiningAVLTree single = new CombiningAVLTree(new AVLTree(), 1);
+        for (int t = 0; t < 3; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> single.insert(id, "num" + id));
+            thread.start();
+            thread.join();
+        }
+        return single.combines() == 3 && single.getTree().size() == 3;
+    }
+
+    //40
+    public boolean compaction() {
+        AVLTree avlTree = new AVLTree();
+        avlTree.setHashIndex(true);
+        for (int i = 0; i < 1000; i++) {
+            avlTree.insert(i, "num" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            avlTree.delete(i);
+        }
+        AVLTree.IAVLNode oldRoot = avlTree.getRoot();
+        int height = oldRoot.getHeight();
+        int steps = 1;
+        while (!avlTree.compactStep(100)) {
+            steps++;
+            avlTree.insert(2 * steps, "new" + steps);
+        }
+        if (steps < 5 || avlTree.getRoot() == oldRoot || avlTree.getRoot().getHeight() != height
+                || !avlTree.search(501).equals("num501") || !avlTree.min().equals("num1")) {
+            return false;
+        }
+        avlTree.compact(true);
+        int[] keys = avlTree.keysToArray();
+        int n = avlTree.size();
+        int minimalHeight = avlTree.getRoot().getHeight();
+        return n == 500 + steps - 1 && keys[0] == 1 && keys[n - 1] == 999 && avlTree.search(4).equals("new2")
+                && (1 << minimalHeight) <= n && n < (1 << (minimalHeight + 1));
+    }
 }
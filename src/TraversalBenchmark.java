@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * TraversalBenchmark
+ *
+ * Compares the loop based search and keysToArray of AVLTree with the recursive
+ * walks they replaced, run on the nodes of the same tree.
+ * usage: java TraversalBenchmark [n] [rounds]
+ */
+public class TraversalBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < n; i++) {
+            tree.insert(random.nextInt(), "");
+        }
+        int[] queries = new int[n];
+        int[] keys = tree.keysToArray();
+        for (int i = 0; i < n; i++) {
+            // half hits, half (almost surely) misses
+            queries[i] = (i % 2 == 0) ? keys[random.nextInt(keys.length)] : random.nextInt();
+        }
+        AVLTree.IAVLNode root = tree.getRoot();
+
+        long[] total = new long[4];
+        long found = 0;
+        for (int r = -1; r < rounds; r++) {
+            // round -1 warms up both versions
+            long start = System.nanoTime();
+            for (int q : queries) {
+                found += (tree.search(q) != null) ? 1 : 0;
+            }
+            long loopSearch = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int q : queries) {
+                found += (recursiveSearch(root, q) != null) ? 1 : 0;
+            }
+            long recursiveSearch = System.nanoTime() - start;
+            start = System.nanoTime();
+            found += tree.keysToArray().length;
+            long loopArray = System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] out = new int[tree.size()];
+            found += recursiveKeys(root, out, 0);
+            long recursiveArray = System.nanoTime() - start;
+            if (r >= 0) {
+                total[0] += loopSearch;
+                total[1] += recursiveSearch;
+                total[2] += loopArray;
+                total[3] += recursiveArray;
+            }
+        }
+
+        System.out.println("n = " + tree.size() + ", rounds = " + rounds + " (" + found + ")");
+        System.out.printf("%-12s %16s %16s%n", "", "loop", "recursive");
+        System.out.printf("%-12s %12.1f M/s %12.1f M/s%n", "search",
+                (double) n * rounds / total[0] * 1e3, (double) n * rounds / total[1] * 1e3);
+        System.out.printf("%-12s %13.2f ms %13.2f ms%n", "keysToArray",
+                total[2] / 1e6 / rounds, total[3] / 1e6 / rounds);
+    }
+
+    private static String recursiveSearch(AVLTree.IAVLNode x, int k) {
+        if ((x == null) || (!x.isRealNode())) {
+            return null;
+        }
+        if (x.getKey() == k) {
+            return x.getValue();
+        }
+        if (k < x.getKey()) {
+            return recursiveSearch(x.getLeft(), k);
+        }
+        return recursiveSearch(x.getRight(), k);
+    }
+
+    private static int recursiveKeys(AVLTree.IAVLNode node, int[] keys, int i) {
+        if (node.isRealNode()) {
+            i = recursiveKeys(node.getLeft(), keys, i);
+            keys[i] = node.getKey();
+            return recursiveKeys(node.getRight(), keys, i + 1);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,316 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *
+ * ValueArena
+ *
+ * Info strings encoded once as UTF-8 into one growable byte array, a value is known by the int offset
+ * of its record. A record is a 4 byte header (the byte length, the top bit set if the value is not ASCII),
+ * with deduplication a 4 byte reference count, and then the bytes.
+ * Records are never moved or overwritten, compaction copies the live records into a new arena,
+ * so a CharSequence view stays valid after the arena grows or is compacted.
+ *
+ */
+
+public class ValueArena {
+
+    private static final int NON_ASCII = 1 << 31;
+    private static final int INITIAL_CAPACITY = 1024;
+    private byte[] buf;
+    private int used;
+    // bytes of records that no node refers to any more
+    private int garbage;
+    // deduplication: open addressing table of record offsets + 1 (0 is an empty slot), null without dedup
+    private int[] table;
+    private int tableCount;
+
+    public ValueArena(boolean dedup) {
+        buf = new byte[INITIAL_CAPACITY];
+        used = 0;
+        garbage = 0;
+        table = dedup ? new int[16] : null;
+        tableCount = 0;
+    }
+
+    /**
+     * public boolean isDedup()
+     * <p>
+     * Returns true if equal values share one record
+     * Complexity: O(1)
+     */
+    public boolean isDedup() {
+        return table != null;
+    }
+
+    /**
+     * public int add(String s)
+     * <p>
+     * Stores s and returns the offset of its record.
+     * With deduplication an equal value that is already stored is reused, even if it is released.
+     * Complexity: O(length of s)
+     */
+    public int add(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return add(bytes, 0, bytes.length, bytes.length != s.length());
+    }
+
+    /**
+     * public int addCopy(ValueArena from, int ref)
+     * <p>
+     * Stores the value of the record ref of arena from without decoding it, returns the new offset
+     * Complexity: O(length of the value)
+     */
+    public int addCopy(ValueArena from, int ref) {
+        int header = from.readInt(ref);
+        return add(from.buf, from.dataOffset(ref), header & ~NON_ASCII, (header & NON_ASCII) != 0);
+    }
+
+    private int add(byte[] bytes, int from, int len, boolean nonAscii) {
+        int header = len | (nonAscii ? NON_ASCII : 0);
+        if (table == null) {
+            return append(bytes, from, len, header);
+        }
+        int mask = table.length - 1;
+        int slot = hash(bytes, from, len) & mask;
+        while (table[slot] != 0) {
+            int ref = table[slot] - 1;
+            if (readInt(ref) == header
+                    && Arrays.equals(buf, ref + 8, ref + 8 + len, bytes, from, from + len)) {
+                int count = readInt(ref + 4);
+                if (count == 0) {
+                    // a released record comes back to life
+                    garbage -= 8 + len;
+                }
+                writeInt(ref + 4, count + 1);
+                return ref;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int ref = append(bytes, from, len, header);
+        table[slot] = ref + 1;
+        tableCount++;
+        if (2 * tableCount > table.length) {
+            rehash();
+        }
+        return ref;
+    }
+
+    /**
+     * private int append(byte[] bytes, int from, int len, int header)
+     * <p>
+     * Writes a new record at the end of the arena and returns its offset
+     * Complexity: O(len), amortized
+     */
+    private int append(byte[] bytes, int from, int len, int header) {
+        int recordSize = len + ((table == null) ? 4 : 8);
+        if (used + recordSize > buf.length) {
+            long capacity = Math.max(2L * buf.length, (long) used + recordSize);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("value arena is full");
+            }
+            buf = Arrays.copyOf(buf, (int) capacity);
+        }
+        int ref = used;
+        writeInt(ref, header);
+        if (table != null) {
+            writeInt(ref + 4, 1);
+        }
+        System.arraycopy(bytes, from, buf, dataOffset(ref), len);
+        used += recordSize;
+        return ref;
+    }
+
+    private void rehash() {
+        int[] old = table;
+        table = new int[2 * old.length];
+        int mask = table.length - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int ref = entry - 1;
+                int slot = hash(buf, ref + 8, readInt(ref) & ~NON_ASCII) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int len) {
+        int h = 1;
+        for (int i = from; i < from + len; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * public void release(int ref)
+     * <p>
+     * A node stopped referring to the record ref, its bytes become garbage once nobody refers to it
+     * Complexity: O(1)
+     */
+    public void release(int ref) {
+        int recordSize = (readInt(ref) & ~NON_ASCII) + 4;
+        if (table != null) {
+            int count = readInt(ref + 4) - 1;
+            writeInt(ref + 4, count);
+            if (count > 0) {
+                return;
+            }
+            recordSize += 4;
+        }
+        garbage += recordSize;
+    }
+
+    /**
+     * public void releaseBytes(int bytes)
+     * <p>
+     * Counts bytes of records that nodes stopped referring to all at once as garbage, without releasing
+     * them one by one. With deduplication a record that other nodes still share is counted too,
+     * so the garbage is an estimate until the next compaction. It never exceeds the used bytes.
+     * Complexity: O(1)
+     */
+    public void releaseBytes(int bytes) {
+        garbage = (int) Math.min(used, (long) garbage + bytes);
+    }
+
+    /**
+     * public int recordBytes(int ref)
+     * <p>
+     * Returns the number of bytes the record ref takes, its header included
+     * Complexity: O(1)
+     */
+    public int recordBytes(int ref) {
+        return (readInt(ref) & ~NON_ASCII) + ((table == null) ? 4 : 8);
+    }
+
+    /**
+     * public String get(int ref)
+     * <p>
+     * Decodes the value of the record ref
+     * Complexity: O(length of the value)
+     */
+    public String get(int ref) {
+        int header = readInt(ref);
+        return new String(buf, dataOffset(ref), header & ~NON_ASCII,
+                ((header & NON_ASCII) != 0) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * public CharSequence view(int ref)
+     * <p>
+     * Returns the value of the record ref without copying it, an ASCII value is read straight
+     * from the arena and any other value is decoded on first use.
+     * Complexity: O(1)
+     */
+    public CharSequence view(int ref) {
+        int header = readInt(ref);
+        return new Utf8View(buf, dataOffset(ref), header & ~NON_ASCII, (header & NON_ASCII) != 0);
+    }
+
+    /**
+     * public int usedBytes()
+     * <p>
+     * Returns the number of bytes taken by records, live or garbage
+     * Complexity: O(1)
+     */
+    public int usedBytes() {
+        return used;
+    }
+
+    /**
+     * public int garbageBytes()
+     * <p>
+     * Returns the number of bytes of released records
+     * Complexity: O(1)
+     */
+    public int garbageBytes() {
+        return garbage;
+    }
+
+    /**
+     * public long memoryBytes()
+     * <p>
+     * Returns the bytes allocated by the arena: the buffer and the deduplication table
+     * Complexity: O(1)
+     */
+    public long memoryBytes() {
+        return buf.length + ((table == null) ? 0L : 4L * table.length);
+    }
+
+    private int dataOffset(int ref) {
+        return ref + ((table == null) ? 4 : 8);
+    }
+
+    private int readInt(int i) {
+        return ((buf[i] & 0xff) << 24) | ((buf[i + 1] & 0xff) << 16) | ((buf[i + 2] & 0xff) << 8) | (buf[i + 3] & 0xff);
+    }
+
+    private void writeInt(int i, int v) {
+        buf[i] = (byte) (v >>> 24);
+        buf[i + 1] = (byte) (v >>> 16);
+        buf[i + 2] = (byte) (v >>> 8);
+        buf[i + 3] = (byte) v;
+    }
+
+    /**
+     * private static class Utf8View
+     *
+     * A CharSequence over a record. The bytes of a record never change, so the view keeps
+     * the buffer it was made from even if the arena has grown into a new one.
+     */
+    private static class Utf8View implements CharSequence {
+
+        private final byte[] buf;
+        private final int from;
+        private final int len;
+        // the decoded value of a non ASCII record, null until it is needed
+        private String decoded;
+        private final boolean nonAscii;
+
+        Utf8View(byte[] buf, int from, int len, boolean nonAscii) {
+            this.buf = buf;
+            this.from = from;
+            this.len = len;
+            this.nonAscii = nonAscii;
+        }
+
+        private String decoded() {
+            if (decoded == null) {
+                decoded = new String(buf, from, len, StandardCharsets.UTF_8);
+            }
+            return decoded;
+        }
+
+        public int length() {
+            return nonAscii ? decoded().length() : len;
+        }
+
+        public char charAt(int index) {
+            if (nonAscii) {
+                return decoded().charAt(index);
+            }
+            if (index < 0 || index >= len) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + len);
+            }
+            return (char) buf[from + index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (nonAscii) {
+                return decoded().subSequence(start, end);
+            }
+            if (start < 0 || end > len || start > end) {
+                throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + len);
+            }
+            return new Utf8View(buf, from + start, end - start, false);
+        }
+
+        public String toString() {
+            return nonAscii ? decoded() : new String(buf, from, len, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *
+ * VectorBlockScan
+ *
+ * The KeyBlocks block compare with the incubator Vector API: one compare instruction per
+ * SPECIES.length() keys, up to the whole 16 key block with 512 bit vectors.
+ * It is kept out of src so the rest of the code builds without the incubator module:
+ *   javac -d out src/*.java
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp out ...
+ * KeyBlocks loads it by name and falls back to its scalar loop when it is missing.
+ *
+ */
+
+public class VectorBlockScan implements KeyBlocks.BlockScan {
+
+    private static final VectorSpecies<Integer> SPECIES = preferredSpecies();
+
+    /**
+     * private static VectorSpecies<Integer> preferredSpecies()
+     * <p>
+     * Returns the widest species that divides a block, so a block is a whole number of vectors
+     * Complexity: O(1)
+     */
+    private static VectorSpecies<Integer> preferredSpecies() {
+        VectorSpecies<Integer> species = IntVector.SPECIES_PREFERRED;
+        if (species.length() > KeyBlocks.BLOCK) {
+            return IntVector.SPECIES_512;
+        }
+        return species;
+    }
+
+    public int countLess(int[] keys, int from, int k) {
+        int count = 0;
+        for (int i = from; i < from + KeyBlocks.BLOCK; i += SPECIES.length()) {
+            count += IntVector.fromArray(SPECIES, keys, i).compare(VectorOperators.LT, k).trueCount();
+        }
+        return count;
+    }
+
+}